@@ -5,7 +5,6 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Mentor Recommendation System - Main Application
@@ -17,7 +16,6 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @MapperScan("com.mentor.mapper")
 @EnableCaching
 @EnableAsync
-@EnableScheduling
 public class MentorApplication {
 
     public static void main(String[] args) {
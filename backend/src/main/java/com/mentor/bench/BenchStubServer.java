@@ -0,0 +1,232 @@
+package com.mentor.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bench Stub Server
+ * 基准测试用的本地替身服务：模拟Python语义检索服务和LLM接口
+ * 向量由文本字符二元组哈希得到，检索结果与LLM回复均是确定性的，便于不同版本之间比较
+ */
+@Slf4j
+public class BenchStubServer {
+
+    public static final String LLM_PATH = "/v1/chat/completions";
+
+    private static final Pattern RERANK_LIMIT = Pattern.compile("最匹配的(\\d+)位");
+    private static final Pattern RERANK_CANDIDATE = Pattern.compile("编号(\\d+)：");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int port;
+    private final int dimension;
+    private final long searchLatencyMs;
+    private final long llmLatencyMs;
+
+    private final Map<Integer, float[]> mentorVectors = new LinkedHashMap<>();
+    private final Map<Integer, float[]> studentVectors = new LinkedHashMap<>();
+
+    private HttpServer server;
+
+    public BenchStubServer(int port, int dimension, long searchLatencyMs, long llmLatencyMs) {
+        this.port = port;
+        this.dimension = dimension;
+        this.searchLatencyMs = searchLatencyMs;
+        this.llmLatencyMs = llmLatencyMs;
+    }
+
+    /**
+     * 注册导师检索语料
+     */
+    public void indexMentor(Integer id, String text) {
+        mentorVectors.put(id, embed(text));
+    }
+
+    /**
+     * 注册学生检索语料
+     */
+    public void indexStudent(Integer id, String text) {
+        studentVectors.put(id, embed(text));
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/embedding", this::handleEmbedding);
+        server.createContext("/mentor/search", exchange -> handleSearch(exchange, mentorVectors));
+        server.createContext("/student/search", exchange -> handleSearch(exchange, studentVectors));
+        server.createContext("/mentor/", this::handleOk);
+        server.createContext("/student/", this::handleOk);
+        server.createContext("/health", this::handleOk);
+        server.createContext(LLM_PATH, this::handleChatCompletion);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        log.info("Bench stub server started on port {} ({} mentors, {} students indexed)",
+                port, mentorVectors.size(), studentVectors.size());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void handleEmbedding(HttpExchange exchange) throws IOException {
+        JsonNode body = readBody(exchange);
+        float[] vector = embed(body.path("text").asText(""));
+        Map<String, Object> response = new HashMap<>();
+        response.put("vector", vector);
+        writeJson(exchange, response);
+    }
+
+    private void handleSearch(HttpExchange exchange, Map<Integer, float[]> corpus) throws IOException {
+        JsonNode body = readBody(exchange);
+        float[] query = embed(body.path("query").asText(""));
+        int topK = body.path("topK").asInt(10);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Map.Entry<Integer, float[]> entry : corpus.entrySet()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("id", entry.getKey());
+            result.put("score", dot(query, entry.getValue()));
+            results.add(result);
+        }
+        results.sort((a, b) -> {
+            int cmp = Double.compare((Double) b.get("score"), (Double) a.get("score"));
+            return cmp != 0 ? cmp : Integer.compare((Integer) a.get("id"), (Integer) b.get("id"));
+        });
+
+        sleep(searchLatencyMs);
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results.subList(0, Math.min(topK, results.size())));
+        writeJson(exchange, response);
+    }
+
+    /**
+     * 模拟LLM：细排请求按原顺序返回固定理由的JSON数组，其余请求返回固定理由文本
+     */
+    private void handleChatCompletion(HttpExchange exchange) throws IOException {
+        JsonNode body = readBody(exchange);
+        String prompt = body.path("messages").path(0).path("content").asText("");
+
+        String content;
+        Matcher limitMatcher = RERANK_LIMIT.matcher(prompt);
+        if (limitMatcher.find()) {
+            int limit = Integer.parseInt(limitMatcher.group(1));
+            int candidates = 0;
+            Matcher candidateMatcher = RERANK_CANDIDATE.matcher(prompt);
+            while (candidateMatcher.find()) {
+                candidates++;
+            }
+            StringBuilder sb = new StringBuilder("```json\n[\n");
+            int n = Math.min(limit, candidates);
+            for (int i = 1; i <= n; i++) {
+                sb.append("  {\"rank\": ").append(i).append(", \"id\": ").append(i)
+                        .append(", \"reason\": \"研究方向高度契合（基准测试固定理由）\"}")
+                        .append(i < n ? ",\n" : "\n");
+            }
+            sb.append("]\n```");
+            content = sb.toString();
+        } else {
+            content = "研究方向与兴趣高度契合，建议进一步沟通。";
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "assistant");
+        message.put("content", content);
+        Map<String, Object> choice = new HashMap<>();
+        choice.put("index", 0);
+        choice.put("message", message);
+        Map<String, Object> response = new HashMap<>();
+        response.put("choices", Collections.singletonList(choice));
+
+        sleep(llmLatencyMs);
+        writeJson(exchange, response);
+    }
+
+    private void handleOk(HttpExchange exchange) throws IOException {
+        readBody(exchange);
+        writeJson(exchange, Collections.singletonMap("status", "ok"));
+    }
+
+    /**
+     * 确定性向量：字符二元组哈希到固定维度后做L2归一化
+     */
+    float[] embed(String text) {
+        float[] vector = new float[dimension];
+        String normalized = text == null ? "" : text.toLowerCase(Locale.ROOT).replaceAll("\\s+", "");
+        for (int i = 0; i + 1 < normalized.length(); i++) {
+            int hash = normalized.substring(i, i + 2).hashCode();
+            int slot = Math.floorMod(hash, dimension);
+            vector[slot] += (hash & 0x10000) == 0 ? 1f : -1f;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            if (out.size() == 0) {
+                return objectMapper.createObjectNode();
+            }
+            return objectMapper.readTree(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeJson(HttpExchange exchange, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.mentor.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mentor.entity.Mentor;
+import com.mentor.entity.Student;
+import com.mentor.mapper.MentorMapper;
+import com.mentor.mapper.StudentMapper;
+import com.mentor.service.EnhancedRecommendationService;
+import com.mentor.service.RecommendationBudget;
+import com.mentor.service.SemanticRecommendationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Recommendation Benchmark
+ * 推荐离线回放与基准测试（仅在 bench profile 下启用）
+ * 使用本地替身服务端到端运行语义推荐与增强推荐，输出吞吐量、各阶段耗时分位数，
+ * 以及两种推荐之间、与上一次结果（基线文件）之间的排序重合度
+ *
+ * 运行：mvn spring-boot:run -Dspring-boot.run.profiles=bench
+ */
+@Slf4j
+@Component
+@Profile("bench")
+public class RecommendationBenchmark implements CommandLineRunner {
+
+    private static final String VARIANT_SEMANTIC = "semantic";
+    private static final String VARIANT_ENHANCED = "enhanced";
+    private static final String STAGE_TOTAL = "total";
+    private static final Pattern DATABASE_SWITCH = Pattern.compile("(?im)^\\s*(USE\\s|CREATE\\s+DATABASE)");
+
+    @Autowired
+    private SemanticRecommendationService semanticRecommendationService;
+
+    @Autowired
+    private EnhancedRecommendationService enhancedRecommendationService;
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${bench.stub.port:5099}")
+    private Integer stubPort;
+
+    @Value("${bench.stub.dimension:64}")
+    private Integer stubDimension;
+
+    @Value("${bench.stub.search-latency-ms:5}")
+    private Long stubSearchLatencyMs;
+
+    @Value("${bench.stub.llm-latency-ms:50}")
+    private Long stubLlmLatencyMs;
+
+    @Value("${bench.fixture-scripts:}")
+    private String[] fixtureScripts;
+
+    @Value("${bench.variants:semantic,enhanced}")
+    private String[] variants;
+
+    @Value("${bench.requests:200}")
+    private Integer requests;
+
+    @Value("${bench.warmup:20}")
+    private Integer warmup;
+
+    @Value("${bench.concurrency:8}")
+    private Integer concurrency;
+
+    @Value("${bench.limit:10}")
+    private Integer limit;
+
+    @Value("${bench.max-students:1000}")
+    private Integer maxStudents;
+
+    @Value("${bench.baseline-file:}")
+    private String baselineFile;
+
+    @Value("${bench.output-file:bench-result.json}")
+    private String outputFile;
+
+    @Value("${bench.exit-on-finish:true}")
+    private Boolean exitOnFinish;
+
+    @Value("${recommendation.budget.total-ms:800}")
+    private Long budgetMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public void run(String... args) throws Exception {
+        int exitCode = 0;
+        BenchStubServer stub = new BenchStubServer(stubPort, stubDimension, stubSearchLatencyMs, stubLlmLatencyMs);
+        try {
+            loadFixture();
+
+            List<Student> students = studentMapper.getStudentList(0, maxStudents);
+            List<Mentor> mentors = mentorMapper.getMentorList(0, Integer.MAX_VALUE);
+            if (students.isEmpty() || mentors.isEmpty()) {
+                throw new IllegalStateException("Fixture dataset is empty, set bench.fixture-scripts or point at a populated database");
+            }
+            for (Mentor mentor : mentors) {
+                stub.indexMentor(mentor.getId(), joinText(mentor.getName(), mentor.getResearchAreas(),
+                        mentor.getKeywords(), mentor.getGroupDirection(), mentor.getBio()));
+            }
+            for (Student student : students) {
+                stub.indexStudent(student.getId(), joinText(student.getName(), student.getResearchInterests(),
+                        student.getExpectedResearchDirection(), student.getKeywords(), student.getBio()));
+            }
+            stub.start();
+
+            List<Integer> studentIds = students.stream().map(Student::getId).collect(Collectors.toList());
+            Map<String, Object> report = new LinkedHashMap<>();
+            Map<String, Map<String, List<Integer>>> rankings = new LinkedHashMap<>();
+            for (String variant : variants) {
+                VariantResult result = runVariant(variant.trim(), studentIds);
+                report.put(result.variant, result.summary());
+                rankings.put(result.variant, result.rankings);
+            }
+
+            if (rankings.containsKey(VARIANT_SEMANTIC) && rankings.containsKey(VARIANT_ENHANCED)) {
+                report.put("overlap_semantic_vs_enhanced",
+                        overlapAtK(rankings.get(VARIANT_SEMANTIC), rankings.get(VARIANT_ENHANCED)));
+            }
+            Map<String, Object> baselineOverlap = compareWithBaseline(rankings);
+            if (!baselineOverlap.isEmpty()) {
+                report.put("overlap_vs_baseline", baselineOverlap);
+            }
+
+            Map<String, Object> output = new LinkedHashMap<>();
+            output.put("report", report);
+            output.put("rankings", rankings);
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(outputFile), output);
+
+            log.info("Benchmark report:\n{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            log.info("Benchmark result written to {}", outputFile);
+        } catch (Exception e) {
+            log.error("Benchmark failed", e);
+            exitCode = 1;
+        } finally {
+            stub.stop();
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    /**
+     * 加载夹具数据（默认 classpath:db/bench_schema.sql, classpath:db/test_data.sql）
+     * 含 USE 或 CREATE DATABASE 的脚本会切换到其他库，直接拒绝
+     */
+    private void loadFixture() throws IOException {
+        List<String> scripts = fixtureScripts == null ? Collections.emptyList() : Arrays.stream(fixtureScripts)
+                .map(String::trim)
+                .filter(script -> !script.isEmpty())
+                .collect(Collectors.toList());
+        if (scripts.isEmpty()) {
+            return;
+        }
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        for (String script : scripts) {
+            Resource resource = resourceLoader.getResource(script);
+            String sql = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+            if (DATABASE_SWITCH.matcher(sql).find()) {
+                throw new IllegalStateException("Fixture script " + script
+                        + " switches database, use a bench fixture such as classpath:db/bench_schema.sql");
+            }
+            populator.addScript(resource);
+        }
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+        log.info("Loaded fixture scripts: {}", scripts);
+    }
+
+    /**
+     * 运行单个推荐版本：先预热，再以固定并发回放请求
+     * 每次请求前清除该学生的推荐缓存，保证测量的是完整流水线
+     */
+    private VariantResult runVariant(String variant, List<Integer> studentIds) throws Exception {
+        VariantResult result = new VariantResult(variant);
+        Map<Integer, Object> studentLocks = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < warmup; i++) {
+            execute(variant, studentIds.get(i % studentIds.size()), studentLocks);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long startNanos = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                Integer studentId = studentIds.get(i % studentIds.size());
+                futures.add(executor.submit(() -> {
+                    try {
+                        RecommendationBudget budget = RecommendationBudget.start(budgetMs);
+                        List<Map<String, Object>> recommendations = execute(variant, studentId, studentLocks, budget);
+                        result.record(studentId, budget, recommendations);
+                    } catch (Exception e) {
+                        result.recordError();
+                        log.warn("Benchmark request failed: {} student {}", variant, studentId, e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        result.wallMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+        return result;
+    }
+
+    private List<Map<String, Object>> execute(String variant, Integer studentId, Map<Integer, Object> studentLocks) {
+        return execute(variant, studentId, studentLocks, RecommendationBudget.start(budgetMs));
+    }
+
+    private List<Map<String, Object>> execute(String variant, Integer studentId, Map<Integer, Object> studentLocks,
+                                              RecommendationBudget budget) {
+        // 同一学生的请求串行执行，避免并发请求之间互相命中缓存
+        synchronized (studentLocks.computeIfAbsent(studentId, k -> new Object())) {
+            if (VARIANT_SEMANTIC.equals(variant)) {
+                semanticRecommendationService.invalidateStudentCache(studentId);
+                return semanticRecommendationService.getMentorRecommendationsForStudent(studentId, limit, budget);
+            }
+            if (VARIANT_ENHANCED.equals(variant)) {
+                enhancedRecommendationService.invalidateMentorRecommendationCache(studentId);
+                return enhancedRecommendationService.getMentorRecommendations(studentId, limit, budget);
+            }
+            throw new IllegalArgumentException("Unknown benchmark variant: " + variant);
+        }
+    }
+
+    /**
+     * 与基线文件（上一次运行的输出）比较排序重合度
+     */
+    private Map<String, Object> compareWithBaseline(Map<String, Map<String, List<Integer>>> rankings) throws Exception {
+        Map<String, Object> overlap = new LinkedHashMap<>();
+        if (baselineFile == null || baselineFile.isEmpty()) {
+            return overlap;
+        }
+        File file = new File(baselineFile);
+        if (!file.exists()) {
+            log.warn("Baseline file not found: {}", baselineFile);
+            return overlap;
+        }
+        Map<String, Object> baseline = objectMapper.readValue(file, new TypeReference<Map<String, Object>>() {});
+        Map<String, Map<String, List<Integer>>> baselineRankings = objectMapper.convertValue(baseline.get("rankings"),
+                new TypeReference<Map<String, Map<String, List<Integer>>>>() {});
+        if (baselineRankings == null) {
+            return overlap;
+        }
+        for (Map.Entry<String, Map<String, List<Integer>>> entry : rankings.entrySet()) {
+            Map<String, List<Integer>> previous = baselineRankings.get(entry.getKey());
+            if (previous != null) {
+                overlap.put(entry.getKey(), overlapAtK(previous, entry.getValue()));
+            }
+        }
+        return overlap;
+    }
+
+    /**
+     * 平均 overlap@k：两份排序前k个导师ID交集大小 / k
+     */
+    private Map<String, Object> overlapAtK(Map<String, List<Integer>> a, Map<String, List<Integer>> b) {
+        double sum = 0;
+        int compared = 0;
+        for (Map.Entry<String, List<Integer>> entry : a.entrySet()) {
+            List<Integer> other = b.get(entry.getKey());
+            if (other == null) {
+                continue;
+            }
+            int k = Math.max(entry.getValue().size(), other.size());
+            if (k == 0) {
+                continue;
+            }
+            Set<Integer> intersection = new HashSet<>(entry.getValue());
+            intersection.retainAll(other);
+            sum += (double) intersection.size() / k;
+            compared++;
+        }
+        Map<String, Object> overlap = new LinkedHashMap<>();
+        overlap.put("k", limit);
+        overlap.put("compared", compared);
+        overlap.put("overlapAtK", compared > 0 ? round(sum / compared) : 0.0);
+        return overlap;
+    }
+
+    private static String joinText(String... parts) {
+        return Arrays.stream(parts).filter(Objects::nonNull).collect(Collectors.joining(" "));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * 单个版本的测量结果
+     */
+    private static class VariantResult {
+        final String variant;
+        final Map<String, List<Long>> stageMillis = new TreeMap<>();
+        final Map<String, Integer> degradations = new TreeMap<>();
+        final Map<String, List<Integer>> rankings = new TreeMap<>();
+        int completed;
+        int errors;
+        long wallMillis;
+
+        VariantResult(String variant) {
+            this.variant = variant;
+        }
+
+        synchronized void record(Integer studentId, RecommendationBudget budget,
+                                 List<Map<String, Object>> recommendations) {
+            completed++;
+            stageMillis.computeIfAbsent(STAGE_TOTAL, k -> new ArrayList<>()).add(budget.elapsedMs());
+            for (Map.Entry<String, Long> entry : budget.getStageMillis().entrySet()) {
+                stageMillis.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue());
+            }
+            for (String degradation : budget.getDegradations()) {
+                degradations.merge(degradation, 1, Integer::sum);
+            }
+            rankings.computeIfAbsent(String.valueOf(studentId), k -> recommendations.stream()
+                    .map(rec -> (Mentor) rec.get("mentor"))
+                    .filter(Objects::nonNull)
+                    .map(Mentor::getId)
+                    .collect(Collectors.toList()));
+        }
+
+        synchronized void recordError() {
+            errors++;
+        }
+
+        synchronized Map<String, Object> summary() {
+            Map<String, Object> stages = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Long>> entry : stageMillis.entrySet()) {
+                List<Long> sorted = new ArrayList<>(entry.getValue());
+                Collections.sort(sorted);
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("count", sorted.size());
+                stats.put("p50", percentile(sorted, 0.50));
+                stats.put("p95", percentile(sorted, 0.95));
+                stats.put("p99", percentile(sorted, 0.99));
+                stats.put("max", sorted.isEmpty() ? 0L : sorted.get(sorted.size() - 1));
+                stages.put(entry.getKey(), stats);
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("completed", completed);
+            summary.put("errors", errors);
+            summary.put("wallMs", wallMillis);
+            summary.put("throughputPerSec", wallMillis > 0 ? round(completed * 1000.0 / wallMillis) : 0.0);
+            summary.put("stagesMs", stages);
+            summary.put("degradations", degradations);
+            return summary;
+        }
+    }
+}
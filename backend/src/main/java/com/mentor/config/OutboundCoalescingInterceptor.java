@@ -0,0 +1,94 @@
+package com.mentor.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbound Coalescing Interceptor
+ * clientOutboundChannel 上的状态类消息合并：同一会话、同一合并键只保留最新一条
+ *
+ * 发送方通过 x-coalesce-key 头标记“只关心最新状态”的消息（输入状态、已读回执等）。
+ * 某个键已有一条在出站线程池中排队时，新消息只替换待投递内容而不再入队；
+ * 排队的任务真正执行时取出该键的最新消息投递。慢连接或出站队列积压时，
+ * 高频状态事件因此不会逐条堆积。
+ */
+@Slf4j
+@Component
+public class OutboundCoalescingInterceptor implements ExecutorChannelInterceptor {
+
+    public static final String COALESCE_HEADER = "x-coalesce-key";
+
+    // sessionId|coalesceKey -> 待投递的最新消息
+    private final Map<String, Message<?>> latest = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String key = keyOf(message);
+        if (key == null) {
+            return message;
+        }
+        if (latest.put(key, message) != null) {
+            // 已有一条在排队，由它投递最新内容
+            coalesced.increment();
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || ex != null) {
+            // 入队失败（如出站队列已满）时清除占位，避免该键后续消息一直被吞掉
+            String key = keyOf(message);
+            if (key != null) {
+                latest.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        String key = keyOf(message);
+        if (key == null) {
+            return message;
+        }
+        Message<?> newest = latest.remove(key);
+        return newest != null ? newest : message;
+    }
+
+    /**
+     * 被合并丢弃的消息数
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static String keyOf(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return null;
+        }
+        Object nativeHeaders = message.getHeaders().get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (!(nativeHeaders instanceof Map)) {
+            return null;
+        }
+        Object values = ((Map<?, ?>) nativeHeaders).get(COALESCE_HEADER);
+        if (!(values instanceof List) || ((List<?>) values).isEmpty()) {
+            return null;
+        }
+        return sessionId + "|" + ((List<?>) values).get(0);
+    }
+}
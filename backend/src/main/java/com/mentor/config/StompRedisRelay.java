@@ -0,0 +1,247 @@
+package com.mentor.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.*;
+
+/**
+ * STOMP Redis Relay
+ * 跨节点 STOMP 消息中继：SimpleBroker 只在本 JVM 内投递，多实例部署时通过 Redis pub/sub 转发
+ *
+ * 同时作为 brokerChannel 与 clientInboundChannel 的拦截器：
+ * - 发往 /topic、/queue 的本地消息照常投递，同时发布到 Redis 频道 stomp:relay:{destination}；
+ * - 根据客户端 SUBSCRIBE / UNSUBSCRIBE / DISCONNECT（clientInboundChannel）维护本节点各目的地的订阅数，
+ *   /user 目的地解析出的会话专属队列只在本节点投递，不参与中继订阅；
+ *   只有本节点存在订阅者的目的地才订阅对应的 Redis 频道；
+ * - 收到其他节点发布的消息后带上中继标记重新注入本节点的 brokerChannel，中继消息不再二次发布。
+ */
+@Slf4j
+@Component
+public class StompRedisRelay implements ChannelInterceptor, MessageListener {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Lazy
+    @Autowired
+    @Qualifier("brokerChannel")
+    private MessageChannel brokerChannel;
+
+    @Value("${websocket.relay.enabled:true}")
+    private Boolean enabled;
+
+    private static final String CHANNEL_PREFIX = "stomp:relay:";
+    private static final String RELAYED_HEADER = "x-relayed";
+    private static final String[] RELAYED_PREFIXES = {"/topic/", "/queue/"};
+
+    // 节点标识，用于忽略自己发布的消息
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessionSubscriptions = new HashMap<>();
+    // destination -> 本节点订阅数
+    private final Map<String, Integer> destinationCounts = new HashMap<>();
+
+    /**
+     * brokerChannel：服务端发往 broker 的消息（SimpMessagingTemplate、@SendTo 等）
+     */
+    @Override
+    public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message,
+                                                           MessageChannel channel) {
+        if (enabled && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                && message.getHeaders().get(RELAYED_HEADER) == null) {
+            publish(message);
+        }
+        return message;
+    }
+
+    /**
+     * clientInboundChannel 拦截器：客户端的 SUBSCRIBE / UNSUBSCRIBE / DISCONNECT 只经过该通道
+     * （SimpleBroker 直接订阅 clientInboundChannel），客户端直接 SEND 到 /topic、/queue 的消息也在此发布
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return inboundInterceptor;
+    }
+
+    private final ChannelInterceptor inboundInterceptor = new ChannelInterceptor() {
+        @Override
+        public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message,
+                                                               MessageChannel channel) {
+            if (!enabled) {
+                return message;
+            }
+            MessageHeaders headers = message.getHeaders();
+            SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+            if (type == null) {
+                return message;
+            }
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+            switch (type) {
+                case MESSAGE:
+                    publish(message);
+                    break;
+                case SUBSCRIBE:
+                    subscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers),
+                            SimpMessageHeaderAccessor.getDestination(headers));
+                    break;
+                case UNSUBSCRIBE:
+                    unsubscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+                    break;
+                case DISCONNECT:
+                    disconnect(sessionId);
+                    break;
+                default:
+                    break;
+            }
+            return message;
+        }
+    };
+
+    /**
+     * 收到 Redis 频道消息：来自其他节点的消息重新注入本节点 broker
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (!(body instanceof Map)) {
+                return;
+            }
+            Map<String, Object> envelope = (Map<String, Object>) body;
+            if (nodeId.equals(envelope.get("origin"))) {
+                return;
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination((String) envelope.get("destination"));
+            Object contentType = envelope.get("contentType");
+            if (contentType instanceof String) {
+                accessor.setContentType(MimeType.valueOf((String) contentType));
+            }
+            Object coalesceKey = envelope.get("coalesceKey");
+            if (coalesceKey instanceof String) {
+                accessor.setNativeHeader(OutboundCoalescingInterceptor.COALESCE_HEADER, (String) coalesceKey);
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            accessor.setLeaveMutable(true);
+            byte[] payload = Base64.getDecoder().decode((String) envelope.get("payload"));
+            brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.warn("Failed to relay STOMP message from Redis: {}", e.getMessage());
+        }
+    }
+
+    private void publish(org.springframework.messaging.Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (!isRelayed(destination) || !(message.getPayload() instanceof byte[])) {
+            return;
+        }
+        try {
+            Map<String, Object> envelope = new HashMap<>();
+            envelope.put("origin", nodeId);
+            envelope.put("destination", destination);
+            Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+            if (contentType != null) {
+                envelope.put("contentType", contentType.toString());
+            }
+            String coalesceKey = SimpMessageHeaderAccessor.wrap(message)
+                    .getFirstNativeHeader(OutboundCoalescingInterceptor.COALESCE_HEADER);
+            if (coalesceKey != null) {
+                envelope.put("coalesceKey", coalesceKey);
+            }
+            envelope.put("payload", Base64.getEncoder().encodeToString((byte[]) message.getPayload()));
+            redisTemplate.convertAndSend(CHANNEL_PREFIX + destination, envelope);
+        } catch (Exception e) {
+            // 跨节点投递失败不影响本地投递
+            log.warn("Failed to publish STOMP message to Redis: {}", destination, e);
+        }
+    }
+
+    private synchronized void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || !isRelayed(destination)) {
+            return;
+        }
+        String previous = sessionSubscriptions.computeIfAbsent(sessionId, k -> new HashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        if (destinationCounts.merge(destination, 1, Integer::sum) == 1) {
+            listenerContainer.addMessageListener(this, topicOf(destination));
+        }
+    }
+
+    private synchronized void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessionSubscriptions.get(sessionId);
+        if (subscriptions == null || subscriptionId == null) {
+            return;
+        }
+        String destination = subscriptions.remove(subscriptionId);
+        if (subscriptions.isEmpty()) {
+            sessionSubscriptions.remove(sessionId);
+        }
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    private synchronized void disconnect(String sessionId) {
+        Map<String, String> subscriptions = sessionId == null ? null : sessionSubscriptions.remove(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        for (String destination : subscriptions.values()) {
+            release(destination);
+        }
+    }
+
+    private void release(String destination) {
+        Integer remaining = destinationCounts.computeIfPresent(destination, (k, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            listenerContainer.removeMessageListener(this, topicOf(destination));
+        }
+    }
+
+    private static Topic topicOf(String destination) {
+        // 带通配符的订阅（SimpleBroker 支持 Ant 风格匹配）使用模式订阅，由本地 broker 精确过滤
+        if (destination.contains("*")) {
+            return new PatternTopic(CHANNEL_PREFIX + destination.replaceAll("\\*+", "*"));
+        }
+        return new ChannelTopic(CHANNEL_PREFIX + destination);
+    }
+
+    private static boolean isRelayed(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : RELAYED_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,10 +1,15 @@
 package com.mentor.config;
 
+import com.mentor.service.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket Configuration
@@ -14,12 +19,65 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompRedisRelay stompRedisRelay;
+
+    @Autowired
+    private OutboundCoalescingInterceptor outboundCoalescingInterceptor;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Value("${websocket.message-size-limit:8192}")
+    private Integer messageSizeLimit;
+
+    @Value("${websocket.send-buffer-size-limit:524288}")
+    private Integer sendBufferSizeLimit;
+
+    @Value("${websocket.send-time-limit-ms:10000}")
+    private Integer sendTimeLimitMs;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private Integer outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:16}")
+    private Integer outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private Integer outboundQueueCapacity;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable simple broker for topic and queue
         config.enableSimpleBroker("/topic", "/queue");
         // Set application destination prefix
         config.setApplicationDestinationPrefixes("/app");
+        // Relay broker messages across backend nodes via Redis pub/sub
+        config.configureBrokerChannel().interceptors(stompRedisRelay);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // 单个会话的发送缓冲与单次发送耗时上限，超出时关闭该慢连接
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 根据 CONNECT / DISCONNECT 维护在线状态；跟踪客户端订阅以决定需要监听的中继频道
+        registration.interceptors(presenceService, stompRedisRelay.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // 有界出站线程池，并合并同一会话的高频状态消息
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(outboundCoalescingInterceptor);
     }
 
     @Override
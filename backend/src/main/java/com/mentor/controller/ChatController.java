@@ -2,6 +2,7 @@ package com.mentor.controller;
 
 import com.mentor.entity.ChatMessage;
 import com.mentor.service.ChatService;
+import com.mentor.service.PresenceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -27,6 +28,9 @@ public class ChatController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private PresenceService presenceService;
+
     /**
      * WebSocket message handler
      * WebSocket消息处理
@@ -74,6 +78,22 @@ public class ChatController {
         }
     }
 
+    /**
+     * WebSocket typing indicator handler
+     * WebSocket输入状态处理：{studentId, mentorId} 或 {applicationId}，以及 userId、typing
+     */
+    @MessageMapping("/chat/typing")
+    public void typing(@Payload Map<String, Object> typingData) {
+        Integer userId = (Integer) typingData.get("userId");
+        boolean typing = !Boolean.FALSE.equals(typingData.get("typing"));
+        if (typingData.get("studentId") != null && typingData.get("mentorId") != null) {
+            presenceService.onTyping(userId,
+                    "/topic/direct/direct_" + typingData.get("studentId") + "_" + typingData.get("mentorId"), typing);
+        } else if (typingData.get("applicationId") != null) {
+            presenceService.onTyping(userId, "/topic/chat/" + typingData.get("applicationId"), typing);
+        }
+    }
+
     /**
      * Get chat messages (REST API)
      * 获取聊天消息（REST API）
@@ -103,6 +123,33 @@ public class ChatController {
         return result;
     }
 
+    /**
+     * Get chat history by application ID (cursor-based)
+     * 按游标获取申请聊天记录
+     */
+    @GetMapping("/{applicationId}/history")
+    @ResponseBody
+    public Map<String, Object> getHistory(
+            @PathVariable Integer applicationId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") Integer limit) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", chatService.getHistoryByApplication(applicationId, beforeId, afterId,
+                    Math.max(1, Math.min(limit, 200))));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取消息失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Mark message as read
      * 标记消息已读
@@ -126,6 +173,61 @@ public class ChatController {
         return result;
     }
 
+    /**
+     * Mark application messages as read up to a message id
+     * 批量标记已读：将 upToId 及之前发给 readerType 的消息标记为已读
+     */
+    @PutMapping("/{applicationId}/read")
+    @ResponseBody
+    public Map<String, Object> markApplicationReadUpTo(
+            @PathVariable Integer applicationId,
+            @RequestParam Long upToId,
+            @RequestParam String readerType) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            int count = chatService.markApplicationReadUpTo(applicationId, readerType, upToId);
+
+            result.put("code", 0);
+            result.put("message", "标记成功");
+            result.put("data", count);
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "标记失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Mark conversation messages as read up to a message id
+     * 批量标记学生-导师会话已读
+     */
+    @PutMapping("/direct/{studentId}/{mentorId}/read")
+    @ResponseBody
+    public Map<String, Object> markConversationReadUpTo(
+            @PathVariable Integer studentId,
+            @PathVariable Integer mentorId,
+            @RequestParam Long upToId,
+            @RequestParam String readerType) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            int count = chatService.markConversationReadUpTo(studentId, mentorId, readerType, upToId);
+
+            result.put("code", 0);
+            result.put("message", "标记成功");
+            result.put("data", count);
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "标记失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Get unread message count
      * 获取未读消息数
@@ -182,6 +284,34 @@ public class ChatController {
         return result;
     }
 
+    /**
+     * Get chat history by student and mentor IDs (cursor-based)
+     * 按游标获取学生-导师聊天记录：beforeId 向前翻页（不传时为最新一页），afterId 获取更新的消息
+     */
+    @GetMapping("/direct/{studentId}/{mentorId}/history")
+    @ResponseBody
+    public Map<String, Object> getHistoryByStudentAndMentor(
+            @PathVariable Integer studentId,
+            @PathVariable Integer mentorId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") Integer limit) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", chatService.getHistoryByStudentAndMentor(studentId, mentorId, beforeId, afterId,
+                    Math.max(1, Math.min(limit, 200))));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取消息失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Get unread message count by student and mentor IDs
      * 根据学生ID和导师ID获取未读消息数
@@ -235,6 +365,28 @@ public class ChatController {
         return result;
     }
 
+    /**
+     * Bulk presence lookup
+     * 批量查询用户是否在线（用于会话列表）
+     */
+    @GetMapping("/presence")
+    @ResponseBody
+    public Map<String, Object> getPresence(@RequestParam List<Integer> userIds) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", presenceService.lookup(userIds));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取在线状态失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Get total unread message count for a user
      * 获取用户的总未读消息数
@@ -2,6 +2,7 @@ package com.mentor.controller;
 
 import com.mentor.entity.Mentor;
 import com.mentor.service.MentorService;
+import com.mentor.service.TrendingMentorService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,6 +21,9 @@ public class MentorController {
     @Autowired
     private MentorService mentorService;
 
+    @Autowired
+    private TrendingMentorService trendingMentorService;
+
     /**
      * Create Mentor
      * 创建导师
@@ -111,6 +115,35 @@ public class MentorController {
         return result;
     }
 
+    /**
+     * Get Trending Mentors
+     * 获取近期热门导师（window: 1h、24h、7d）
+     */
+    @GetMapping("/trending")
+    public Map<String, Object> getTrendingMentors(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") Integer limit) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            if (!"1h".equals(window) && !"24h".equals(window) && !"7d".equals(window)) {
+                result.put("code", 400);
+                result.put("message", "Window must be one of 1h, 24h, 7d");
+                return result;
+            }
+
+            result.put("code", 0);
+            result.put("message", "Success");
+            result.put("data", trendingMentorService.getTrendingMentors(window, Math.max(1, Math.min(limit, 50))));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "Failed to get trending mentors: " + e.getMessage());
+        }
+
+        return result;
+    }
+
     /**
      * Get Mentor by ID
      * 根据ID获取导师
@@ -5,13 +5,19 @@ import com.mentor.entity.UserPreference;
 import com.mentor.mapper.StudentMapper;
 import com.mentor.mapper.UserPreferenceMapper;
 import com.mentor.service.EnhancedRecommendationService;
-import com.mentor.service.RecommendationService;
+import com.mentor.service.LLMService;
+import com.mentor.service.MatchingService;
+import com.mentor.service.PreferenceAnalysisService;
+import com.mentor.service.RecommendationMetrics;
 import com.mentor.service.SemanticRecommendationService;
 import com.mentor.service.UserBehaviorService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,9 +29,6 @@ import java.util.Map;
 @RequestMapping("/recommendations")
 public class RecommendationController {
 
-    @Autowired
-    private RecommendationService recommendationService;
-
     @Autowired
     private EnhancedRecommendationService enhancedRecommendationService;
 
@@ -41,6 +44,18 @@ public class RecommendationController {
     @Autowired
     private StudentMapper studentMapper;
 
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
+    @Autowired
+    private MatchingService matchingService;
+
+    @Autowired
+    private PreferenceAnalysisService preferenceAnalysisService;
+
+    @Autowired
+    private LLMService llmService;
+
     /**
      * Get personalized mentor recommendations for student (Enhanced)
      * 为学生获取个性化导师推荐（增强版 - 基于语义检索）
@@ -135,6 +150,102 @@ public class RecommendationController {
         return result;
     }
 
+    /**
+     * Browse mentor recommendations page by page
+     * 学生分页浏览导师推荐（第一页为细排结果，之后按游标分页）
+     */
+    @GetMapping("/mentors/feed")
+    public Map<String, Object> getMentorFeed(
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Integer studentId,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(defaultValue = "10") Integer pageSize) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            Integer inputId = studentId != null ? studentId : userId;
+            if (inputId == null) {
+                result.put("code", 400);
+                result.put("message", "学生ID不能为空");
+                return result;
+            }
+
+            Student student = studentMapper.getStudentById(inputId);
+            if (student == null) {
+                student = studentMapper.getStudentByUserId(inputId);
+            }
+            Integer actualStudentId = student != null ? student.getId() : inputId;
+
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", semanticRecommendationService.getMentorFeedForStudent(actualStudentId, cursor, Math.max(1, Math.min(pageSize, 200))));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取导师推荐失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Browse student recommendations page by page
+     * 导师分页浏览学生推荐（第一页为细排结果，之后按游标分页）
+     */
+    @GetMapping("/students/feed")
+    public Map<String, Object> getStudentFeed(
+            @RequestParam Integer mentorId,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(defaultValue = "10") Integer pageSize) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", semanticRecommendationService.getStudentFeedForMentor(mentorId, cursor, Math.max(1, Math.min(pageSize, 200))));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取学生推荐失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Stream mentor recommendation reasons (SSE)
+     * 以 SSE 流式推送导师推荐理由，LLM 生成期间不占用请求线程
+     */
+    @GetMapping(value = "/mentors/reasons/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMentorReasons(
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Integer studentId,
+            @RequestParam(defaultValue = "10") Integer limit) {
+        Integer inputId = studentId != null ? studentId : userId;
+        if (inputId == null) {
+            throw new IllegalArgumentException("学生ID不能为空");
+        }
+
+        Student student = studentMapper.getStudentById(inputId);
+        if (student == null) {
+            student = studentMapper.getStudentByUserId(inputId);
+        }
+        Integer actualStudentId = student != null ? student.getId() : inputId;
+
+        return semanticRecommendationService.streamMentorReasons(actualStudentId, limit);
+    }
+
+    /**
+     * Stream student recommendation reasons (SSE)
+     * 以 SSE 流式推送学生推荐理由
+     */
+    @GetMapping(value = "/students/reasons/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStudentReasons(
+            @RequestParam Integer mentorId,
+            @RequestParam(defaultValue = "10") Integer limit) {
+        return semanticRecommendationService.streamStudentReasons(mentorId, limit);
+    }
+
     /**
      * Get user preferences
      * 获取用户偏好
@@ -235,14 +346,14 @@ public class RecommendationController {
         Map<String, Object> result = new HashMap<>();
 
         try {
-            // Trigger preference analysis
-            List<Map<String, Object>> recommendations = recommendationService.getRecommendations(userId);
-            
-            // Get updated preferences
+            // Trigger preference analysis in background
+            boolean submitted = preferenceAnalysisService.requestAnalysis(userId);
+
+            // Return the last computed preference
             UserPreference preference = userPreferenceMapper.getUserPreferenceByUserId(userId);
 
             result.put("code", 0);
-            result.put("message", "分析完成");
+            result.put("message", submitted || preferenceAnalysisService.isPending(userId) ? "分析任务已提交" : "分析任务提交失败，请稍后重试");
             result.put("data", preference);
 
         } catch (Exception e) {
@@ -270,7 +381,7 @@ public class RecommendationController {
             String actionType = (String) params.get("actionType");
             Integer durationSeconds = (Integer) params.get("durationSeconds");
 
-            if (userId == null || targetType == null || targetId == null || actionType == null) {
+            if (userId == null || userType == null || targetType == null || targetId == null || actionType == null) {
                 result.put("code", 400);
                 result.put("message", "缺少必要参数");
                 return result;
@@ -319,4 +430,110 @@ public class RecommendationController {
 
         return result;
     }
+
+    /**
+     * Get suggested mentor from global stable matching
+     * 获取全局稳定匹配给出的建议导师（考虑导师名额）
+     */
+    @GetMapping("/suggested-match")
+    public Map<String, Object> getSuggestedMatch(
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Integer studentId) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            Integer inputId = studentId != null ? studentId : userId;
+            if (inputId == null) {
+                result.put("code", 400);
+                result.put("message", "学生ID不能为空");
+                return result;
+            }
+
+            Student student = studentMapper.getStudentById(inputId);
+            if (student == null) {
+                student = studentMapper.getStudentByUserId(inputId);
+            }
+            Integer actualStudentId = student != null ? student.getId() : inputId;
+
+            Map<String, Object> match = matchingService.getSuggestedMentor(actualStudentId);
+            result.put("code", 0);
+            result.put("message", match != null ? "成功" : "暂无建议匹配");
+            result.put("data", match);
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取建议匹配失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Get suggested students for mentor from global stable matching
+     * 获取全局稳定匹配分配给导师的建议学生
+     */
+    @GetMapping("/suggested-students")
+    public Map<String, Object> getSuggestedStudents(@RequestParam Integer mentorId) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            result.put("code", 0);
+            result.put("message", "成功");
+            result.put("data", matchingService.getSuggestedStudents(mentorId));
+
+        } catch (Exception e) {
+            result.put("code", 500);
+            result.put("message", "获取建议学生失败: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Trigger global stable matching
+     * 触发全局稳定匹配（后台执行）
+     */
+    @PostMapping("/matching/run")
+    public Map<String, Object> runMatching() {
+        Map<String, Object> result = new HashMap<>();
+
+        if (matchingService.isRunning()) {
+            result.put("code", 409);
+            result.put("message", "匹配任务正在执行");
+            return result;
+        }
+        matchingService.runMatchingAsync();
+        result.put("code", 0);
+        result.put("message", "匹配任务已开始");
+        return result;
+    }
+
+    /**
+     * Get last matching summary
+     * 获取最近一次全局匹配的统计信息
+     */
+    @GetMapping("/matching/summary")
+    public Map<String, Object> getMatchingSummary() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 0);
+        result.put("message", "成功");
+        result.put("data", matchingService.getSummary());
+        return result;
+    }
+
+    /**
+     * Get recommendation pipeline metrics
+     * 获取推荐流水线各阶段耗时与降级统计
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 0);
+        result.put("message", "成功");
+        Map<String, Object> metrics = new LinkedHashMap<>(recommendationMetrics.snapshot());
+        metrics.put("llm", llmService.getStats());
+        metrics.put("tracking", userBehaviorService.getIngestionStats());
+        result.put("data", metrics);
+        return result;
+    }
 }
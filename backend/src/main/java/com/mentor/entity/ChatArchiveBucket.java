@@ -0,0 +1,73 @@
+package com.mentor.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ChatArchiveBucket Document
+ * 聊天归档桶（MongoDB）：每个学生-导师会话每天一个文档
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "chat_archive")
+@CompoundIndexes({
+        @CompoundIndex(name = "idx_conversation_last_id", def = "{'studentId': 1, 'mentorId': 1, 'lastId': -1}"),
+        @CompoundIndex(name = "idx_conversation_first_id", def = "{'studentId': 1, 'mentorId': 1, 'firstId': 1}")
+})
+public class ChatArchiveBucket implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 桶ID: {studentId}_{mentorId}_{yyyyMMdd}
+     */
+    @Id
+    private String id;
+
+    /**
+     * 学生ID
+     */
+    private Integer studentId;
+
+    /**
+     * 导师ID
+     */
+    private Integer mentorId;
+
+    /**
+     * 日期: yyyyMMdd
+     */
+    private String day;
+
+    /**
+     * 桶内最小消息ID
+     */
+    private Long firstId;
+
+    /**
+     * 桶内最大消息ID
+     */
+    private Long lastId;
+
+    /**
+     * 归档的消息（顺序不保证，读取时按ID排序）
+     */
+    private List<ChatMessage> messages;
+
+    /**
+     * 最后归档时间
+     */
+    private Date updateTime;
+}
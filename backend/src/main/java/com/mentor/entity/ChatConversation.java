@@ -0,0 +1,62 @@
+package com.mentor.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * ChatConversation Entity
+ * 聊天会话汇总实体类（每对学生-导师一行）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatConversation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 学生ID
+     */
+    private Integer studentId;
+
+    /**
+     * 导师ID
+     */
+    private Integer mentorId;
+
+    /**
+     * 最后一条消息ID
+     */
+    private Long lastMessageId;
+
+    /**
+     * 最后一条消息摘要
+     */
+    private String lastMessagePreview;
+
+    /**
+     * 最后一条消息时间
+     */
+    private Date lastTime;
+
+    /**
+     * 学生未读数（批量更新时为增量）
+     */
+    private Integer unreadForStudent;
+
+    /**
+     * 导师未读数（批量更新时为增量）
+     */
+    private Integer unreadForMentor;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
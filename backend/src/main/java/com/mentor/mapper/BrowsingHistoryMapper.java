@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Browsing History Mapper
@@ -18,6 +19,11 @@ public interface BrowsingHistoryMapper {
      */
     void insertBrowsingHistory(BrowsingHistory history);
 
+    /**
+     * Insert browsing history in one multi-row statement
+     */
+    int insertBrowsingHistoryBatch(@Param("list") List<BrowsingHistory> list);
+
     /**
      * Get user history
      */
@@ -32,4 +38,15 @@ public interface BrowsingHistoryMapper {
      * Count user history
      */
     int countUserHistory(@Param("userId") Integer userId);
+
+    /**
+     * Increment per-user event counters (user_behavior_stats)
+     * 每项包含 userId、count、lastEventTime
+     */
+    int incrementUserEventCounts(@Param("list") List<Map<String, Object>> list);
+
+    /**
+     * Get user event count from user_behavior_stats (primary key lookup)
+     */
+    Integer getUserEventCount(@Param("userId") Integer userId);
 }
@@ -0,0 +1,52 @@
+package com.mentor.mapper;
+
+import com.mentor.entity.ChatConversation;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chat Conversation Mapper
+ * 聊天会话汇总数据访问接口
+ */
+@Mapper
+public interface ChatConversationMapper {
+
+    /**
+     * Apply a batch of new messages to conversation summaries
+     * 批量应用新消息：更新最后一条消息，未读数按增量累加
+     */
+    void upsertConversationDeltas(@Param("conversations") List<ChatConversation> conversations);
+
+    /**
+     * Rebuild one conversation summary from chat_messages
+     * 从消息表重新计算单个会话（用于预写日志重放等无法按增量更新的场景）
+     */
+    void refreshConversation(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId);
+
+    /**
+     * Recount unread messages of one conversation
+     * 重新统计单个会话的未读数
+     */
+    void refreshUnreadCounts(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId);
+
+    /**
+     * Get conversations that have unread messages
+     * 获取存在未读消息的会话（用于校准 Redis 未读计数）
+     */
+    List<ChatConversation> getUnreadConversations();
+
+    /**
+     * Get conversation list for a user
+     * 获取用户的聊天会话列表
+     */
+    List<Map<String, Object>> getConversationsByUserId(@Param("userId") Integer userId, @Param("userType") String userType);
+
+    /**
+     * Count total unread messages for a user
+     * 统计用户的总未读消息数
+     */
+    int countTotalUnreadMessages(@Param("userId") Integer userId, @Param("userType") String userType);
+}
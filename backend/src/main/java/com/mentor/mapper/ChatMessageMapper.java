@@ -4,6 +4,7 @@ import com.mentor.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -19,15 +20,51 @@ public interface ChatMessageMapper {
      */
     void insertChatMessage(ChatMessage message);
 
+    /**
+     * Batch insert chat messages with pre-assigned ids
+     * 批量写入已分配ID的消息（重复ID会报错）
+     */
+    void insertChatMessagesBatch(@Param("messages") List<ChatMessage> messages);
+
     /**
      * Get messages by application ID
      */
     List<ChatMessage> getMessagesByApplicationId(@Param("applicationId") Integer applicationId, @Param("offset") Integer offset, @Param("limit") Integer limit);
 
+    /**
+     * Get message by ID
+     */
+    ChatMessage getMessageById(@Param("id") Long id);
+
     /**
      * Mark message as read
+     * 返回受影响行数（消息原本未读时为 1）
      */
-    void markMessageAsRead(@Param("id") Long id);
+    int markMessageAsRead(@Param("id") Long id);
+
+    /**
+     * Count unread messages up to a message id, grouped by application and conversation (locks the rows)
+     * 统计并锁定 upToId 及之前发给 readerType 的未读消息；applicationId 为空时按学生-导师会话匹配
+     */
+    List<Map<String, Object>> lockUnreadUpTo(@Param("applicationId") Integer applicationId, @Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("readerType") String readerType, @Param("upToId") Long upToId);
+
+    /**
+     * Mark messages as read up to a message id (single ranged update)
+     * 将 upToId 及之前发给 readerType 的未读消息标记为已读，返回受影响行数
+     */
+    int markMessagesAsReadUpTo(@Param("applicationId") Integer applicationId, @Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("readerType") String readerType, @Param("upToId") Long upToId);
+
+    /**
+     * Get read conversation messages created before a cutoff, oldest first
+     * 获取早于 cutoff 的已读会话消息（用于归档）
+     */
+    List<ChatMessage> getArchivableMessages(@Param("cutoff") Date cutoff, @Param("limit") Integer limit);
+
+    /**
+     * Delete messages by IDs
+     * 批量删除消息（已归档）
+     */
+    int deleteMessagesByIds(@Param("ids") List<Long> ids);
 
     /**
      * Count unread messages
@@ -40,19 +77,25 @@ public interface ChatMessageMapper {
     List<ChatMessage> getMessagesByStudentAndMentor(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("offset") Integer offset, @Param("limit") Integer limit);
 
     /**
-     * Count unread messages by student and mentor IDs
+     * Get messages by student and mentor IDs with keyset pagination
+     * 按消息ID游标分页：afterId 不为空时返回更新的消息（升序），否则返回 beforeId 之前的消息（降序）
      */
-    int countUnreadMessagesByStudentAndMentor(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("receiverType") String receiverType);
+    List<ChatMessage> getMessagesByStudentAndMentorKeyset(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("beforeId") Long beforeId, @Param("afterId") Long afterId, @Param("limit") Integer limit);
+
+    /**
+     * Get messages by application ID with keyset pagination
+     * 按消息ID游标分页（同上）
+     */
+    List<ChatMessage> getMessagesByApplicationIdKeyset(@Param("applicationId") Integer applicationId, @Param("beforeId") Long beforeId, @Param("afterId") Long afterId, @Param("limit") Integer limit);
 
     /**
-     * Get conversation list for a user
-     * 获取用户的聊天会话列表
+     * Count unread messages by student and mentor IDs
      */
-    List<Map<String, Object>> getConversationsByUserId(@Param("userId") Integer userId, @Param("userType") String userType);
+    int countUnreadMessagesByStudentAndMentor(@Param("studentId") Integer studentId, @Param("mentorId") Integer mentorId, @Param("receiverType") String receiverType);
 
     /**
-     * Count total unread messages for a user
-     * 统计用户的总未读消息数
+     * Count unread application messages grouped by application and sender type
+     * 按申请与发送方统计未读消息（用于校准 Redis 未读计数）
      */
-    int countTotalUnreadMessages(@Param("userId") Integer userId, @Param("userType") String userType);
+    List<Map<String, Object>> countUnreadGroupedByApplication();
 }
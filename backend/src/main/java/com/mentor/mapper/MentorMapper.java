@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Mentor Mapper
@@ -33,6 +34,12 @@ public interface MentorMapper {
      */
     Mentor getMentorById(@Param("id") Integer id);
 
+    /**
+     * Get mentors by IDs (order not guaranteed)
+     * 按ID批量获取导师（不保证顺序）
+     */
+    List<Mentor> getMentorsByIds(@Param("ids") List<Integer> ids);
+
     /**
      * Get mentor by user ID
      */
@@ -43,6 +50,12 @@ public interface MentorMapper {
      */
     List<Mentor> getMentorList(@Param("offset") Integer offset, @Param("limit") Integer limit);
 
+    /**
+     * Get active mentors with id greater than afterId, ordered by id (keyset pagination)
+     * 按 ID 游标分页遍历全部导师，翻页期间排序字段变化不会导致遗漏或重复
+     */
+    List<Mentor> getMentorsAfterId(@Param("afterId") Integer afterId, @Param("limit") Integer limit);
+
     /**
      * Search mentors by keyword
      */
@@ -73,6 +86,11 @@ public interface MentorMapper {
      */
     void incrementViewCount(@Param("id") Integer id);
 
+    /**
+     * Add aggregated view count deltas (each item has id and delta)
+     */
+    int addViewCounts(@Param("list") List<Map<String, Object>> list);
+
     /**
      * Update mentor rating
      */
@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Rating Mapper
@@ -53,6 +54,11 @@ public interface RatingMapper {
      */
     void incrementHelpfulCount(@Param("id") Integer id);
 
+    /**
+     * Add aggregated helpful count deltas (each item has id and delta)
+     */
+    int addHelpfulCounts(@Param("list") List<Map<String, Object>> list);
+
     /**
      * Count ratings by mentor
      */
@@ -33,6 +33,12 @@ public interface StudentMapper {
      */
     Student getStudentById(@Param("id") Integer id);
 
+    /**
+     * Get students by IDs (order not guaranteed)
+     * 按ID批量获取学生（不保证顺序）
+     */
+    List<Student> getStudentsByIds(@Param("ids") List<Integer> ids);
+
     /**
      * Get student by user ID
      */
@@ -43,6 +49,12 @@ public interface StudentMapper {
      */
     List<Student> getStudentList(@Param("offset") Integer offset, @Param("limit") Integer limit);
 
+    /**
+     * Get active students with id greater than afterId, ordered by id (keyset pagination)
+     * 按 ID 游标分页遍历全部学生
+     */
+    List<Student> getStudentsAfterId(@Param("afterId") Integer afterId, @Param("limit") Integer limit);
+
     /**
      * Search students by keyword
      */
@@ -0,0 +1,165 @@
+package com.mentor.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded Batching Worker
+ * 有界队列 + 单个后台线程的批量写入器，供各异步写入组件复用
+ *
+ * 后台线程每隔 flushIntervalMs 或凑满 batchSize 条时把一批交给 Handler.write；
+ * write 抛出异常时按递增间隔重试，多次失败后交给 Handler.onGiveUp。
+ * stop 时中断后台线程，等待当前批次写完，再按 batchSize 分批写出队列中剩余的元素。
+ */
+@Slf4j
+public final class BatchingWorker<T> {
+
+    /**
+     * 批次处理回调
+     */
+    public interface Handler<T> {
+
+        /**
+         * 写入一批；抛出异常时整批重试，因此实现需保证失败时没有部分生效
+         */
+        void write(List<T> batch) throws Exception;
+
+        /**
+         * 写入成功后调用一次（不参与重试）
+         */
+        default void onWritten(List<T> batch) {
+        }
+
+        /**
+         * 重试次数用尽后调用
+         */
+        default void onGiveUp(List<T> batch) {
+        }
+    }
+
+    private static final int FLUSH_RETRIES = 3;
+
+    private final String name;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Handler<T> handler;
+    private final ArrayBlockingQueue<T> queue;
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    public BatchingWorker(String name, int queueCapacity, int batchSize, long flushIntervalMs, Handler<T> handler) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写出仍在队列中的元素
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flush(remaining.subList(from, Math.min(remaining.size(), from + batchSize)));
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 放入队列；队列已满或未启动时返回 false，由调用方决定降级方式
+     */
+    public boolean offer(T item) {
+        return running && queue.offer(item);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void runFlusher() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                T first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 凑批：最多再等待 flushIntervalMs
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断：写出已取出的批次后退出，剩余元素由 stop 写出
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                return;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<T> batch) {
+        for (int attempt = 1; attempt <= FLUSH_RETRIES; attempt++) {
+            try {
+                handler.write(batch);
+            } catch (Exception e) {
+                log.warn("{}: failed to write {} items (attempt {}/{})", name, batch.size(), attempt, FLUSH_RETRIES, e);
+                if (attempt < FLUSH_RETRIES) {
+                    try {
+                        Thread.sleep(100L * attempt);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                continue;
+            }
+            try {
+                handler.onWritten(batch);
+            } catch (Exception e) {
+                log.warn("{}: post-write callback failed for {} items", name, batch.size(), e);
+            }
+            return;
+        }
+        log.error("{}: giving up writing {} items", name, batch.size());
+        handler.onGiveUp(batch);
+    }
+}
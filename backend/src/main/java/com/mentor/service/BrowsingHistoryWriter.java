@@ -0,0 +1,195 @@
+package com.mentor.service;
+
+import com.mentor.entity.BrowsingHistory;
+import com.mentor.mapper.BrowsingHistoryMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Browsing History Writer
+ * 行为记录异步批量写入
+ *
+ * 请求线程只把记录放入有界队列即返回；后台线程每隔 flush-interval-ms 或凑满 batch-size 条时
+ * 以多行 INSERT 写入 browsing_history，并在同一事务中累加 user_behavior_stats 中的用户计数，
+ * 随后按用户触发偏好分析检查。
+ * 队列已满时直接丢弃并计数（行为数据允许少量丢失，不能拖慢用户请求）；关闭时写出队列中剩余的记录。
+ * 缺少必填字段的记录在 submit 时直接拒绝；整批写入仍违反约束时逐条重写，只丢弃被拒绝的记录。
+ * 队列与后台线程由 BatchingWorker 实现。
+ */
+@Slf4j
+@Service
+public class BrowsingHistoryWriter {
+
+    @Autowired
+    private BrowsingHistoryMapper browsingHistoryMapper;
+
+    @Autowired
+    private PreferenceAnalysisService preferenceAnalysisService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${tracking.writer.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${tracking.writer.batch-size:500}")
+    private Integer batchSize;
+
+    @Value("${tracking.writer.flush-interval-ms:200}")
+    private Long flushIntervalMs;
+
+    @Value("${tracking.writer.queue-capacity:20000}")
+    private Integer queueCapacity;
+
+    private BatchingWorker<BrowsingHistory> worker;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        worker = new BatchingWorker<>("browsing-history-writer", queueCapacity, batchSize, flushIntervalMs,
+                new BatchingWorker.Handler<BrowsingHistory>() {
+                    @Override
+                    public void write(List<BrowsingHistory> batch) {
+                        try {
+                            BrowsingHistoryWriter.this.write(batch);
+                            written.add(batch.size());
+                        } catch (DataIntegrityViolationException e) {
+                            log.warn("Batch of {} browsing history records rejected, retrying row by row: {}",
+                                    batch.size(), e.getMessage());
+                            writeIndividually(batch);
+                        }
+                    }
+
+                    @Override
+                    public void onWritten(List<BrowsingHistory> batch) {
+                        batches.increment();
+                        notifyAnalysis(batch);
+                    }
+
+                    @Override
+                    public void onGiveUp(List<BrowsingHistory> batch) {
+                        failed.add(batch.size());
+                    }
+                });
+        if (enabled) {
+            worker.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        worker.stop();
+    }
+
+    /**
+     * 提交一条行为记录；未启用时同步写入，队列已满时丢弃
+     * 缺少必填字段时抛出 IllegalArgumentException，不进入队列
+     */
+    public void submit(BrowsingHistory history) {
+        if (history.getUserId() == null || history.getUserType() == null || history.getTargetType() == null
+                || history.getTargetId() == null || history.getActionType() == null) {
+            throw new IllegalArgumentException("userId, userType, targetType, targetId and actionType are required");
+        }
+        if (!enabled || !worker.isRunning()) {
+            write(Collections.singletonList(history));
+            preferenceAnalysisService.onBehaviorTracked(history.getUserId());
+            return;
+        }
+        if (worker.offer(history)) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+            log.debug("Browsing history queue is full, dropping record for user {}", history.getUserId());
+        }
+    }
+
+    /**
+     * 写入统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", worker.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("batches", batches.sum());
+        return stats;
+    }
+
+    /**
+     * 同一事务写入记录并累加用户计数
+     */
+    private void write(List<BrowsingHistory> batch) {
+        // 按用户聚合增量；按 user_id 排序加锁，避免多个节点并发写入时死锁
+        Map<Integer, Map<String, Object>> deltas = new TreeMap<>();
+        for (BrowsingHistory history : batch) {
+            Map<String, Object> delta = deltas.computeIfAbsent(history.getUserId(), userId -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("userId", userId);
+                row.put("count", 0);
+                return row;
+            });
+            delta.put("count", (Integer) delta.get("count") + 1);
+            Date last = (Date) delta.get("lastEventTime");
+            if (last == null || (history.getCreateTime() != null && history.getCreateTime().after(last))) {
+                delta.put("lastEventTime", history.getCreateTime());
+            }
+        }
+        transactionTemplate.execute(status -> {
+            browsingHistoryMapper.insertBrowsingHistoryBatch(batch);
+            browsingHistoryMapper.incrementUserEventCounts(new ArrayList<>(deltas.values()));
+            return null;
+        });
+    }
+
+    /**
+     * 逐条写入：被约束拒绝的记录丢弃并计数，其余记录照常落库
+     * 不再向上抛出异常，避免整批重试时重复写入已成功的记录
+     */
+    private void writeIndividually(List<BrowsingHistory> batch) {
+        for (BrowsingHistory history : batch) {
+            try {
+                write(Collections.singletonList(history));
+                written.increment();
+            } catch (DataIntegrityViolationException e) {
+                rejected.increment();
+                log.warn("Browsing history record for user {} rejected: {}", history.getUserId(), e.getMessage());
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("Failed to write browsing history record for user {}: {}", history.getUserId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 记录落库后再提交偏好分析检查（分析按用户去重）
+     */
+    private void notifyAnalysis(List<BrowsingHistory> batch) {
+        Set<Integer> users = new LinkedHashSet<>();
+        for (BrowsingHistory history : batch) {
+            users.add(history.getUserId());
+        }
+        for (Integer userId : users) {
+            preferenceAnalysisService.onBehaviorTracked(userId);
+        }
+    }
+}
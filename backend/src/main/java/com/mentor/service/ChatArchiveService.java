@@ -0,0 +1,179 @@
+package com.mentor.service;
+
+import com.mentor.entity.ChatArchiveBucket;
+import com.mentor.entity.ChatMessage;
+import com.mentor.mapper.ChatMessageMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Chat Archive Service
+ * 聊天冷数据归档：将超过保留天数的已读会话消息移入 MongoDB，按会话、按天分桶
+ *
+ * 每批先以 $addToSet 合并进桶文档，成功后再从 MySQL 删除；中途失败重跑时
+ * 同一条消息不会重复进桶。只归档已读消息，未读的旧消息会留在 MySQL，两边 ID 区间可能交错，
+ * 历史查询因此以同一游标分别读取热数据与归档，再按 ID 归并。
+ */
+@Slf4j
+@Service
+public class ChatArchiveService {
+
+    @Autowired(required = false)
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Value("${chat.archive.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${chat.archive.retention-days:90}")
+    private Integer retentionDays;
+
+    @Value("${chat.archive.batch-size:500}")
+    private Integer batchSize;
+
+    @Value("${chat.archive.max-batches:100}")
+    private Integer maxBatches;
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * 定时归档：每次最多处理 max-batches 批
+     */
+    @Scheduled(initialDelayString = "${chat.archive.initial-delay-ms:60000}",
+            fixedDelayString = "${chat.archive.interval-ms:3600000}")
+    public void archive() {
+        if (!enabled || mongoTemplate == null) {
+            return;
+        }
+        Date cutoff = new Date(System.currentTimeMillis() - retentionDays * 24L * 3600 * 1000);
+        int archived = 0;
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                List<ChatMessage> batch = chatMessageMapper.getArchivableMessages(cutoff, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                archiveBatch(batch);
+                archived += batch.size();
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Chat archive run failed after {} messages", archived, e);
+        }
+        if (archived > 0) {
+            log.info("Archived {} chat messages older than {} days", archived, retentionDays);
+        }
+    }
+
+    private void archiveBatch(List<ChatMessage> batch) {
+        Map<String, List<ChatMessage>> buckets = batch.stream()
+                .collect(Collectors.groupingBy(this::bucketId, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<ChatMessage>> entry : buckets.entrySet()) {
+            List<ChatMessage> messages = entry.getValue();
+            ChatMessage first = messages.get(0);
+            long minId = messages.stream().mapToLong(ChatMessage::getId).min().getAsLong();
+            long maxId = messages.stream().mapToLong(ChatMessage::getId).max().getAsLong();
+
+            Update update = new Update()
+                    .setOnInsert("studentId", first.getStudentId())
+                    .setOnInsert("mentorId", first.getMentorId())
+                    .setOnInsert("day", day(first))
+                    .min("firstId", minId)
+                    .max("lastId", maxId)
+                    .set("updateTime", new Date());
+            update.addToSet("messages").each(messages.toArray());
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(entry.getKey())), update, ChatArchiveBucket.class);
+        }
+        // 全部写入 MongoDB 后再删除
+        chatMessageMapper.deleteMessagesByIds(batch.stream().map(ChatMessage::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * 读取 beforeId 之前的归档消息（按 ID 降序），beforeId 为空时从最新的归档开始
+     * applicationId 不为空时只返回该申请的消息
+     */
+    public List<ChatMessage> findBefore(Integer studentId, Integer mentorId, Integer applicationId,
+                                        Long beforeId, int limit) {
+        Query query = conversationQuery(studentId, mentorId);
+        if (beforeId != null) {
+            query.addCriteria(Criteria.where("firstId").lt(beforeId));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "lastId"));
+        return scan(query, limit, Comparator.comparing(ChatMessage::getId).reversed(),
+                m -> (beforeId == null || m.getId() < beforeId) && matches(m, applicationId));
+    }
+
+    /**
+     * 读取 afterId 之后的归档消息（按 ID 升序）
+     */
+    public List<ChatMessage> findAfter(Integer studentId, Integer mentorId, Integer applicationId,
+                                       Long afterId, int limit) {
+        Query query = conversationQuery(studentId, mentorId);
+        query.addCriteria(Criteria.where("lastId").gt(afterId));
+        query.with(Sort.by(Sort.Direction.ASC, "firstId"));
+        return scan(query, limit, Comparator.comparing(ChatMessage::getId),
+                m -> m.getId() > afterId && matches(m, applicationId));
+    }
+
+    private Query conversationQuery(Integer studentId, Integer mentorId) {
+        return new Query(Criteria.where("studentId").is(studentId).and("mentorId").is(mentorId));
+    }
+
+    /**
+     * 按顺序遍历桶，凑够 limit 条即停止；MongoDB 不可用时返回已取得的部分
+     */
+    private List<ChatMessage> scan(Query query, int limit, Comparator<ChatMessage> order,
+                                   Predicate<ChatMessage> filter) {
+        List<ChatMessage> result = new ArrayList<>();
+        if (!enabled || mongoTemplate == null || limit <= 0) {
+            return result;
+        }
+        try (CloseableIterator<ChatArchiveBucket> buckets = mongoTemplate.stream(query, ChatArchiveBucket.class)) {
+            while (buckets.hasNext() && result.size() < limit) {
+                List<ChatMessage> messages = buckets.next().getMessages();
+                if (messages == null) {
+                    continue;
+                }
+                messages.stream()
+                        .filter(filter)
+                        .sorted(order)
+                        .limit(limit - result.size())
+                        .forEach(result::add);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chat archive: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private static boolean matches(ChatMessage message, Integer applicationId) {
+        return applicationId == null || applicationId.equals(message.getApplicationId());
+    }
+
+    private String bucketId(ChatMessage message) {
+        return message.getStudentId() + "_" + message.getMentorId() + "_" + day(message);
+    }
+
+    private static String day(ChatMessage message) {
+        return message.getCreateTime().toInstant().atZone(ZoneId.systemDefault()).format(DAY_FORMAT);
+    }
+}
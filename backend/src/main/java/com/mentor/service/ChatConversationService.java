@@ -0,0 +1,106 @@
+package com.mentor.service;
+
+import com.mentor.entity.ChatConversation;
+import com.mentor.entity.ChatMessage;
+import com.mentor.mapper.ChatConversationMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Chat Conversation Service
+ * 聊天会话汇总（chat_conversations）维护：收件箱与总未读数直接按索引读取该表
+ *
+ * 新消息落库后按会话合并为增量批量更新；无法确定增量的场景（预写日志重放、已读）
+ * 从消息表按 (student_id, mentor_id) 索引重新计算。
+ */
+@Slf4j
+@Service
+public class ChatConversationService {
+
+    @Autowired
+    private ChatConversationMapper chatConversationMapper;
+
+    private static final int PREVIEW_LENGTH = 200;
+
+    /**
+     * 应用一批新写入的消息
+     */
+    public void applyMessages(List<ChatMessage> messages) {
+        Map<String, ChatConversation> deltas = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            if (message.getStudentId() == null || message.getMentorId() == null) {
+                continue;
+            }
+            ChatConversation delta = deltas.computeIfAbsent(message.getStudentId() + ":" + message.getMentorId(),
+                    k -> ChatConversation.builder()
+                            .studentId(message.getStudentId())
+                            .mentorId(message.getMentorId())
+                            .lastMessageId(Long.MIN_VALUE)
+                            .unreadForStudent(0)
+                            .unreadForMentor(0)
+                            .build());
+            if (message.getId() > delta.getLastMessageId()) {
+                delta.setLastMessageId(message.getId());
+                delta.setLastMessagePreview(preview(message.getContent()));
+                delta.setLastTime(message.getCreateTime());
+            }
+            if (!Boolean.TRUE.equals(message.getIsRead())) {
+                if ("mentor".equalsIgnoreCase(message.getSenderType())) {
+                    delta.setUnreadForStudent(delta.getUnreadForStudent() + 1);
+                } else if ("student".equalsIgnoreCase(message.getSenderType())) {
+                    delta.setUnreadForMentor(delta.getUnreadForMentor() + 1);
+                }
+            }
+        }
+        if (!deltas.isEmpty()) {
+            chatConversationMapper.upsertConversationDeltas(new ArrayList<>(deltas.values()));
+        }
+    }
+
+    /**
+     * 从消息表重新计算这些消息所属的会话
+     */
+    public void refreshFor(List<ChatMessage> messages) {
+        Set<String> refreshed = new HashSet<>();
+        for (ChatMessage message : messages) {
+            if (message.getStudentId() == null || message.getMentorId() == null) {
+                continue;
+            }
+            if (refreshed.add(message.getStudentId() + ":" + message.getMentorId())) {
+                chatConversationMapper.refreshConversation(message.getStudentId(), message.getMentorId());
+            }
+        }
+    }
+
+    /**
+     * 会话中有消息被标记已读后重新统计未读数
+     */
+    public void onMessagesRead(Integer studentId, Integer mentorId) {
+        if (studentId == null || mentorId == null) {
+            return;
+        }
+        try {
+            chatConversationMapper.refreshUnreadCounts(studentId, mentorId);
+        } catch (Exception e) {
+            log.warn("Failed to refresh unread counts for conversation {}-{}", studentId, mentorId, e);
+        }
+    }
+
+    /**
+     * Get conversation list for a user
+     * 获取用户的聊天会话列表
+     */
+    public List<Map<String, Object>> getConversations(Integer userId, String userType) {
+        return chatConversationMapper.getConversationsByUserId(userId, userType);
+    }
+
+    private static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+}
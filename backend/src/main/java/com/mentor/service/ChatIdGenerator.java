@@ -0,0 +1,178 @@
+package com.mentor.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat Message Id Generator
+ * 聊天消息 ID 生成器：按时间递增的 53 位 ID，发送时即可返回给客户端，无需等待数据库自增主键
+ *
+ * 位布局：41 位毫秒时间戳（自 2024-01-01 起）| 4 位节点号 | 8 位毫秒内序号。
+ * 53 位以内可被 JavaScript Number 精确表示；时间戳远大于历史自增 ID，新旧消息按 ID 排序仍保持时间顺序。
+ * 节点号未配置时在 Redis 中租用（SETNX chat:id:node:{n} 并带 TTL，定时续期，关闭时释放），
+ * 同一时刻两个存活节点不会持有同一节点号；续期发现租约已被他人占用时改租其他节点号。
+ * 16 个节点号均被占用或 Redis 不可用时随机选取。
+ */
+@Slf4j
+@Component
+public class ChatIdGenerator {
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${chat.id.node-id:-1}")
+    private Integer configuredNodeId;
+
+    @Value("${chat.id.lease-ttl-seconds:60}")
+    private Long leaseTtlSeconds;
+
+    private static final long EPOCH = 1704067200000L;  // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final String NODE_LEASE_PREFIX = "chat:id:node:";
+
+    // 仍由本节点持有时才续期 / 释放
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final String leaseToken = UUID.randomUUID().toString();
+
+    private volatile long nodeId;
+    private volatile boolean leased;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    @PostConstruct
+    public void init() {
+        if (configuredNodeId != null && configuredNodeId >= 0) {
+            nodeId = configuredNodeId & MAX_NODE;
+        } else {
+            nodeId = allocateNodeId();
+        }
+        log.info("Chat id generator node id: {}{}", nodeId, leased ? " (leased)" : "");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!leased) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(NODE_LEASE_PREFIX + nodeId), leaseToken);
+        } catch (Exception e) {
+            log.warn("Failed to release chat id node lease: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定时续期节点号租约，间隔为 TTL 的三分之一
+     */
+    @Scheduled(fixedDelayString = "#{${chat.id.lease-ttl-seconds:60} * 1000 / 3}")
+    public void renewLease() {
+        if (configuredNodeId != null && configuredNodeId >= 0) {
+            return;
+        }
+        if (!leased) {
+            // 启动时未能租到节点号（Redis 不可用或已占满）：重试租用
+            long next = allocateNodeId();
+            if (leased) {
+                synchronized (this) {
+                    nodeId = next;
+                }
+                log.info("Chat id generator leased node id {}", next);
+            }
+            return;
+        }
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(NODE_LEASE_PREFIX + nodeId), leaseToken, leaseTtlSeconds);
+            if (renewed == null || renewed == 0L) {
+                // 租约已过期（如长时间停顿）并可能被其他节点占用：改租节点号
+                long previous = nodeId;
+                long next = allocateNodeId();
+                synchronized (this) {
+                    nodeId = next;
+                }
+                log.warn("Chat id node lease {} was lost, switched to node id {}", previous, next);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to renew chat id node lease: {}", e.getMessage());
+        }
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 生成下一个 ID
+     */
+    public synchronized long nextId() {
+        long timestamp = System.currentTimeMillis();
+        if (timestamp < lastTimestamp) {
+            // 时钟回拨：沿用上一个时间戳，保证单调递增
+            timestamp = lastTimestamp;
+        }
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 本毫秒序号用尽，借用下一毫秒
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 一段时长对应的 ID 跨度：ID 减去该值约等于早 millis 毫秒生成的 ID（不区分节点）
+     */
+    public static long idSpan(long millis) {
+        return millis << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    /**
+     * 从随机位置开始依次尝试租用空闲节点号
+     */
+    private long allocateNodeId() {
+        leased = false;
+        long start = ThreadLocalRandom.current().nextLong(MAX_NODE + 1);
+        if (redisTemplate != null) {
+            try {
+                for (long i = 0; i <= MAX_NODE; i++) {
+                    long candidate = (start + i) & MAX_NODE;
+                    Boolean acquired = redisTemplate.opsForValue().setIfAbsent(
+                            NODE_LEASE_PREFIX + candidate, leaseToken, leaseTtlSeconds, TimeUnit.SECONDS);
+                    if (Boolean.TRUE.equals(acquired)) {
+                        leased = true;
+                        return candidate;
+                    }
+                }
+                log.warn("All chat id node ids are leased, using random node id");
+            } catch (Exception e) {
+                log.warn("Failed to lease chat id node from Redis, using random node id");
+            }
+        }
+        return start;
+    }
+}
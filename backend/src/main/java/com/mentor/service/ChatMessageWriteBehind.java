@@ -0,0 +1,419 @@
+package com.mentor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mentor.entity.ChatMessage;
+import com.mentor.mapper.ApplicationMapper;
+import com.mentor.mapper.ChatMessageMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+
+/**
+ * Chat Message Write-Behind
+ * 聊天消息异步批量落库
+ *
+ * 发送时先分配 ID 并追加到 Redis Stream（chat:wal）作为预写日志，随后立即广播；
+ * 后台线程每隔 flush-interval-ms 或凑满 batch-size 条时以多行 INSERT 写入 chat_messages，
+ * 并按会话增量更新 chat_conversations，成功后删除对应的日志记录。
+ * 每条日志带上写入节点的节点号。进程崩溃或写库失败时日志保留：启动时立即重放本节点号的日志，
+ * 其他节点的日志与定时任务一样只重放超过 replay-delay-ms 的部分，避免与仍在运行的节点重复写入；
+ * 重放时会话汇总按消息表重新计算。
+ * 预写日志或内存队列不可用时退化为同步单条写入。队列与后台线程由 BatchingWorker 实现。
+ *
+ * 发送前校验非空字段与关联申请，被数据库拒绝的消息不会先广播出去。整批写入违反约束时逐条重写，
+ * 只把被拒绝的消息连同原因移入死信列表（chat:wal:dead），其余消息照常落库；
+ * 逐条写入遇到主键冲突时与已有记录比对，内容一致视为先前已写入，否则是 ID 冲突，同样进入死信并报错。
+ * 数据库不可用等其他异常仍整批重试并保留日志。
+ */
+@Slf4j
+@Service
+public class ChatMessageWriteBehind {
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Autowired
+    private ApplicationMapper applicationMapper;
+
+    @Autowired
+    private ChatIdGenerator chatIdGenerator;
+
+    @Autowired
+    private ChatConversationService chatConversationService;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${chat.write-behind.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${chat.write-behind.batch-size:200}")
+    private Integer batchSize;
+
+    @Value("${chat.write-behind.flush-interval-ms:20}")
+    private Long flushIntervalMs;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private Integer queueCapacity;
+
+    @Value("${chat.write-behind.replay-delay-ms:30000}")
+    private Long replayDelayMs;
+
+    @Value("${chat.write-behind.dead-letter-max:10000}")
+    private Integer deadLetterMax;
+
+    private static final String WAL_KEY = "chat:wal";
+    private static final String WAL_FIELD = "message";
+    private static final String WAL_NODE_FIELD = "node";
+    private static final String DEAD_LETTER_KEY = "chat:wal:dead";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BatchingWorker<PendingMessage> worker;
+
+    @PostConstruct
+    public void init() {
+        worker = new BatchingWorker<>("chat-write-behind", queueCapacity, batchSize, flushIntervalMs,
+                new BatchingWorker.Handler<PendingMessage>() {
+                    @Override
+                    public void write(List<PendingMessage> batch) {
+                        flush(batch);
+                    }
+
+                    @Override
+                    public void onGiveUp(List<PendingMessage> batch) {
+                        // 多次失败后保留预写日志，由定时重放补写
+                        log.error("Chat messages left in WAL for replay: {}", batch.size());
+                    }
+                });
+        if (!enabled) {
+            return;
+        }
+        // 本节点号之前的实例已退出，其日志可立即重放；其他节点的日志可能仍在对方队列中
+        replayWal(replayDelayMs, true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        worker.stop();
+    }
+
+    /**
+     * 保存消息：分配 ID 与时间后写入预写日志并进入批量队列
+     * 返回时消息已持久化到日志（或已同步写库），可以立即广播
+     */
+    public ChatMessage save(ChatMessage message) {
+        validate(message);
+        if (message.getId() == null) {
+            message.setId(chatIdGenerator.nextId());
+        }
+        if (message.getCreateTime() == null) {
+            message.setCreateTime(new Date());
+        }
+        if (!enabled || !worker.isRunning()) {
+            insertNow(message);
+            return message;
+        }
+
+        RecordId recordId = appendWal(message);
+        if (recordId == null) {
+            insertNow(message);
+            return message;
+        }
+        if (!worker.offer(new PendingMessage(message, recordId))) {
+            // 队列已满：同步写入，日志记录随后删除
+            log.warn("Chat write-behind queue is full, writing message {} synchronously", message.getId());
+            insertNow(message);
+            deleteWal(Collections.singletonList(recordId));
+        }
+        return message;
+    }
+
+    /**
+     * 定时重放残留的预写日志（写库失败或其他节点崩溃遗留的记录）
+     */
+    @Scheduled(fixedDelayString = "${chat.write-behind.replay-interval-ms:60000}")
+    public void replayStaleWal() {
+        if (enabled) {
+            replayWal(replayDelayMs, false);
+        }
+    }
+
+    /**
+     * 读取所有节点尚未落库的消息（预写日志中的全部记录）；读取失败时返回 null
+     * 日志记录在消息与会话汇总都写入后才删除，不在其中的消息已反映在 MySQL 中
+     */
+    public List<ChatMessage> pendingMessages() {
+        if (redisTemplate == null) {
+            return null;
+        }
+        List<ChatMessage> messages = new ArrayList<>();
+        Range.Bound<String> lower = Range.Bound.unbounded();
+        RecordId lastSeen = null;
+        try {
+            while (true) {
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                        .range(WAL_KEY, Range.of(lower, Range.Bound.unbounded()),
+                                RedisZSetCommands.Limit.limit().count(batchSize));
+                if (records == null || records.isEmpty()) {
+                    break;
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    Object json = record.getValue().get(WAL_FIELD);
+                    if (record.getId().equals(lastSeen) || !(json instanceof String)) {
+                        continue;
+                    }
+                    try {
+                        messages.add(objectMapper.readValue((String) json, ChatMessage.class));
+                    } catch (Exception e) {
+                        // 无法解析的记录不会落库，由重放移入死信
+                    }
+                }
+                if (records.size() < batchSize) {
+                    break;
+                }
+                lastSeen = records.get(records.size() - 1).getId();
+                lower = Range.Bound.inclusive(lastSeen.getValue());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chat WAL: {}", e.getMessage());
+            return null;
+        }
+        return messages;
+    }
+
+    /**
+     * 写入一批消息并按会话累加增量，成功后删除对应的日志记录；抛出异常时由 BatchingWorker 整批重试
+     */
+    private void flush(List<PendingMessage> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        List<RecordId> recordIds = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message);
+            recordIds.add(pending.recordId);
+        }
+        try {
+            // 多行 INSERT 整条成功或整条失败
+            chatMessageMapper.insertChatMessagesBatch(messages);
+            chatConversationService.applyMessages(messages);
+        } catch (DataIntegrityViolationException e) {
+            // 某条消息违反约束，或上次尝试已写入（会话增量失败后重试）：逐条处理
+            log.warn("Batch insert of {} chat messages rejected, retrying row by row: {}",
+                    messages.size(), e.getMessage());
+            persistIndividually(messages, false);
+        }
+        deleteWal(recordIds);
+    }
+
+    /**
+     * 逐条写入：被约束拒绝的消息进入死信；已由先前尝试写入的消息按消息表重新计算会话汇总
+     * （replay 为 true 时全部按重新计算处理，因为无法确定会话增量是否已生效）
+     */
+    private void persistIndividually(List<ChatMessage> messages, boolean replay) {
+        List<ChatMessage> inserted = new ArrayList<>();
+        List<ChatMessage> persisted = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            try {
+                chatMessageMapper.insertChatMessagesBatch(Collections.singletonList(message));
+                inserted.add(message);
+            } catch (DuplicateKeyException e) {
+                ChatMessage existing = chatMessageMapper.getMessageById(message.getId());
+                if (isSameMessage(existing, message)) {
+                    persisted.add(message);
+                } else {
+                    log.error("Chat message id collision on {}, moving message to dead letter", message.getId());
+                    deadLetter(message, "id collision");
+                }
+            } catch (DataIntegrityViolationException e) {
+                log.error("Chat message {} rejected by database, moving to dead letter: {}",
+                        message.getId(), e.getMessage());
+                deadLetter(message, e.getMessage());
+            }
+        }
+        if (replay) {
+            inserted.addAll(persisted);
+            if (!inserted.isEmpty()) {
+                chatConversationService.refreshFor(inserted);
+            }
+            return;
+        }
+        if (!inserted.isEmpty()) {
+            chatConversationService.applyMessages(inserted);
+        }
+        if (!persisted.isEmpty()) {
+            chatConversationService.refreshFor(persisted);
+        }
+    }
+
+    private static boolean isSameMessage(ChatMessage existing, ChatMessage message) {
+        return existing != null
+                && Objects.equals(existing.getSenderId(), message.getSenderId())
+                && Objects.equals(existing.getSenderType(), message.getSenderType())
+                && Objects.equals(existing.getStudentId(), message.getStudentId())
+                && Objects.equals(existing.getMentorId(), message.getMentorId())
+                && Objects.equals(existing.getContent(), message.getContent());
+    }
+
+    /**
+     * 发送前校验：非空字段与关联申请（外键），不通过时直接拒绝，消息不会被广播
+     */
+    private void validate(ChatMessage message) {
+        if (message.getSenderId() == null || message.getSenderType() == null) {
+            throw new IllegalArgumentException("Message senderId and senderType are required");
+        }
+        if (message.getApplicationId() != null
+                && applicationMapper.getApplicationById(message.getApplicationId()) == null) {
+            throw new IllegalArgumentException("Application not found: " + message.getApplicationId());
+        }
+    }
+
+    private void deadLetter(Object message, String reason) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("message", message instanceof String ? message : objectMapper.writeValueAsString(message));
+            entry.put("reason", reason);
+            entry.put("time", System.currentTimeMillis());
+            redisTemplate.opsForList().rightPush(DEAD_LETTER_KEY, entry);
+            redisTemplate.opsForList().trim(DEAD_LETTER_KEY, -deadLetterMax, -1);
+        } catch (Exception e) {
+            log.warn("Failed to dead-letter chat message: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重放早于 now - minAgeMs 的日志记录；includeOwnNode 为 true 时本节点号的记录不受时间限制
+     * 无法解析或被数据库拒绝的记录进入死信后删除，不会阻塞后续记录的重放
+     */
+    private void replayWal(long minAgeMs, boolean includeOwnNode) {
+        if (redisTemplate == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - minAgeMs;
+        String ownNode = String.valueOf(chatIdGenerator.getNodeId());
+        Range.Bound<String> upper = includeOwnNode ? Range.Bound.unbounded() : Range.Bound.inclusive(cutoff + "-0");
+        Range.Bound<String> lower = Range.Bound.unbounded();
+        RecordId lastSeen = null;
+        int replayed = 0;
+        try {
+            while (true) {
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                        .range(WAL_KEY, Range.of(lower, upper), RedisZSetCommands.Limit.limit().count(batchSize));
+                if (records == null || records.isEmpty()) {
+                    break;
+                }
+                List<ChatMessage> messages = new ArrayList<>(records.size());
+                List<RecordId> recordIds = new ArrayList<>(records.size());
+                for (MapRecord<String, Object, Object> record : records) {
+                    if (record.getId().equals(lastSeen)) {
+                        // 下界为闭区间，上一批的最后一条会再次返回
+                        continue;
+                    }
+                    boolean own = ownNode.equals(record.getValue().get(WAL_NODE_FIELD));
+                    if (!own && record.getId().getTimestamp() > cutoff) {
+                        // 其他节点尚未过期的记录：可能仍在对方队列中
+                        continue;
+                    }
+                    recordIds.add(record.getId());
+                    Object json = record.getValue().get(WAL_FIELD);
+                    if (json instanceof String) {
+                        try {
+                            messages.add(objectMapper.readValue((String) json, ChatMessage.class));
+                        } catch (Exception e) {
+                            log.error("Unreadable chat WAL record {}, moving to dead letter", record.getId());
+                            deadLetter(json, "unreadable: " + e.getMessage());
+                        }
+                    }
+                }
+                if (!messages.isEmpty()) {
+                    replayMessages(messages);
+                }
+                deleteWal(recordIds);
+                replayed += messages.size();
+                if (records.size() < batchSize) {
+                    break;
+                }
+                lastSeen = records.get(records.size() - 1).getId();
+                lower = Range.Bound.inclusive(lastSeen.getValue());
+            }
+        } catch (Exception e) {
+            log.error("Failed to replay chat WAL", e);
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} chat messages from WAL", replayed);
+        }
+    }
+
+    /**
+     * 写入重放的消息，会话汇总按消息表重新计算而不是累加
+     * 整批因约束失败（含已落库的消息）时逐条处理，已落库的消息与已有记录比对
+     */
+    private void replayMessages(List<ChatMessage> messages) {
+        try {
+            chatMessageMapper.insertChatMessagesBatch(messages);
+            chatConversationService.refreshFor(messages);
+        } catch (DataIntegrityViolationException e) {
+            persistIndividually(messages, true);
+        }
+    }
+
+    private RecordId appendWal(ChatMessage message) {
+        if (redisTemplate == null) {
+            return null;
+        }
+        try {
+            Map<String, String> fields = new HashMap<>(4);
+            fields.put(WAL_FIELD, objectMapper.writeValueAsString(message));
+            fields.put(WAL_NODE_FIELD, String.valueOf(chatIdGenerator.getNodeId()));
+            return redisTemplate.opsForStream().add(StreamRecords.newRecord().in(WAL_KEY).ofMap(fields));
+        } catch (Exception e) {
+            log.warn("Failed to append chat message to WAL: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteWal(List<RecordId> recordIds) {
+        if (redisTemplate == null || recordIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForStream().delete(WAL_KEY, recordIds.toArray(new RecordId[0]));
+        } catch (Exception e) {
+            // 删除失败只会导致重放时再次写入，已落库的消息经比对后跳过
+            log.warn("Failed to trim chat WAL: {}", e.getMessage());
+        }
+    }
+
+    private void insertNow(ChatMessage message) {
+        List<ChatMessage> messages = Collections.singletonList(message);
+        chatMessageMapper.insertChatMessagesBatch(messages);
+        chatConversationService.applyMessages(messages);
+    }
+
+    private static final class PendingMessage {
+        final ChatMessage message;
+        final RecordId recordId;
+
+        PendingMessage(ChatMessage message, RecordId recordId) {
+            this.message = message;
+            this.recordId = recordId;
+        }
+    }
+}
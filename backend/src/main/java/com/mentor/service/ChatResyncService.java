@@ -0,0 +1,214 @@
+package com.mentor.service;
+
+import com.mentor.entity.ChatMessage;
+import com.mentor.mapper.ChatMessageMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chat Resync Service
+ * 断线重连增量同步：每个会话在 Redis 中保留最近 buffer-size 条消息的环形缓冲
+ *
+ * 客户端重连后 SUBSCRIBE 聊天频道时携带 lastSeenId 头，服务端把该 ID 之后的消息
+ * 推送到该连接的 /user/queue/resync（{destination, messages, hasMore}）。
+ * 缓冲最早一条仍不晚于 lastSeenId 时直接由缓冲补齐；缓冲已滚动覆盖或过期时
+ * 回退到按 ID 游标的历史查询（与缓冲合并去重），一次最多 fallback-limit 条，
+ * hasMore 为 true 时客户端再通过历史接口继续拉取。
+ *
+ * 各节点生成的 ID 只在节点内有序：其他节点稍早生成的消息可能晚于 lastSeenId 到达客户端，
+ * ID 却更小。因此补发窗口从 lastSeenId 往前放宽 slack-ms 毫秒的 ID 跨度，
+ * 窗口内客户端已收到的消息由客户端按已见 ID 集合去重。
+ */
+@Slf4j
+@Service
+public class ChatResyncService {
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${chat.resync.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${chat.resync.buffer-size:100}")
+    private Integer bufferSize;
+
+    @Value("${chat.resync.buffer-ttl-seconds:86400}")
+    private Long bufferTtlSeconds;
+
+    @Value("${chat.resync.fallback-limit:200}")
+    private Integer fallbackLimit;
+
+    @Value("${chat.resync.slack-ms:5000}")
+    private Long slackMs;
+
+    private static final String LAST_SEEN_HEADER = "lastSeenId";
+    private static final String RESYNC_DESTINATION = "/queue/resync";
+    private static final String KEY_APPLICATION = "chat:recent:app:";
+    private static final String KEY_CONVERSATION = "chat:recent:conv:";
+
+    private static final Pattern APPLICATION_TOPIC = Pattern.compile("^/topic/chat/(\\d+)$");
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/chat/(\\d+)/(\\d+)$");
+    private static final Pattern DIRECT_TOPIC = Pattern.compile("^/topic/direct/direct_(\\d+)_(\\d+)$");
+
+    /**
+     * 消息广播后追加到所属申请与会话的缓冲（最新在前）
+     */
+    public void append(ChatMessage message) {
+        if (!enabled || redisTemplate == null || message.getId() == null) {
+            return;
+        }
+        try {
+            if (message.getApplicationId() != null) {
+                push(KEY_APPLICATION + message.getApplicationId(), message);
+            }
+            if (message.getStudentId() != null && message.getMentorId() != null) {
+                push(KEY_CONVERSATION + message.getStudentId() + ":" + message.getMentorId(), message);
+            }
+        } catch (Exception e) {
+            // 缓冲缺失时重连会回退到历史查询
+            log.warn("Failed to buffer chat message {}: {}", message.getId(), e.getMessage());
+        }
+    }
+
+    private void push(String key, ChatMessage message) {
+        redisTemplate.opsForList().leftPush(key, message);
+        redisTemplate.opsForList().trim(key, 0, bufferSize - 1);
+        redisTemplate.expire(key, bufferTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 订阅聊天频道时若带有 lastSeenId，推送错过的消息
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String lastSeen = accessor.getFirstNativeHeader(LAST_SEEN_HEADER);
+        String destination = accessor.getDestination();
+        String sessionId = accessor.getSessionId();
+        if (lastSeen == null || destination == null || sessionId == null) {
+            return;
+        }
+        try {
+            Map<String, Object> payload = resync(destination, Long.parseLong(lastSeen.trim()));
+            if (payload == null) {
+                return;
+            }
+            // 以会话ID作为用户名，只投递给该连接
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(sessionId);
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(sessionId, RESYNC_DESTINATION, payload, headers.getMessageHeaders());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring invalid lastSeenId {} on {}", lastSeen, destination);
+        } catch (Exception e) {
+            log.warn("Failed to resync {} for session {}: {}", destination, sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 计算某个聊天频道 lastSeenId 之前 slack-ms 起的消息；非聊天频道返回 null
+     */
+    public Map<String, Object> resync(String destination, long lastSeenId) {
+        Integer applicationId = null;
+        Integer studentId = null;
+        Integer mentorId = null;
+        Matcher matcher = APPLICATION_TOPIC.matcher(destination);
+        if (matcher.matches()) {
+            applicationId = Integer.valueOf(matcher.group(1));
+        } else {
+            matcher = CONVERSATION_TOPIC.matcher(destination);
+            if (!matcher.matches()) {
+                matcher = DIRECT_TOPIC.matcher(destination);
+                if (!matcher.matches()) {
+                    return null;
+                }
+            }
+            studentId = Integer.valueOf(matcher.group(1));
+            mentorId = Integer.valueOf(matcher.group(2));
+        }
+
+        List<ChatMessage> buffered = readBuffer(applicationId != null
+                ? KEY_APPLICATION + applicationId : KEY_CONVERSATION + studentId + ":" + mentorId);
+        // 其他节点的消息 ID 与 lastSeenId 之间没有先后保证，窗口向前放宽
+        long fromId = Math.max(0L, lastSeenId - ChatIdGenerator.idSpan(slackMs));
+        // 缓冲最早一条不晚于窗口起点，说明之后的消息都在缓冲内
+        boolean covered = !buffered.isEmpty() && buffered.get(buffered.size() - 1).getId() <= fromId;
+
+        TreeMap<Long, ChatMessage> missed = new TreeMap<>();
+        for (ChatMessage message : buffered) {
+            if (message.getId() > fromId) {
+                missed.put(message.getId(), message);
+            }
+        }
+
+        boolean hasMore = false;
+        if (!covered) {
+            List<ChatMessage> rows = applicationId != null
+                    ? chatMessageMapper.getMessagesByApplicationIdKeyset(applicationId, null, fromId, fallbackLimit + 1)
+                    : chatMessageMapper.getMessagesByStudentAndMentorKeyset(studentId, mentorId, null, fromId, fallbackLimit + 1);
+            hasMore = rows.size() > fallbackLimit;
+            for (ChatMessage row : hasMore ? rows.subList(0, fallbackLimit) : rows) {
+                missed.putIfAbsent(row.getId(), row);
+            }
+            if (hasMore) {
+                // 只返回连续的一段，其余由客户端按游标继续拉取
+                Long boundary = rows.get(fallbackLimit - 1).getId();
+                missed.tailMap(boundary, false).clear();
+            }
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("destination", destination);
+        payload.put("lastSeenId", lastSeenId);
+        payload.put("fromId", fromId);
+        payload.put("messages", new ArrayList<>(missed.values()));
+        payload.put("hasMore", hasMore);
+        return payload;
+    }
+
+    /**
+     * 读取缓冲（最新在前）；Redis 不可用时返回空列表
+     */
+    private List<ChatMessage> readBuffer(String key) {
+        List<ChatMessage> messages = new ArrayList<>();
+        if (redisTemplate == null) {
+            return messages;
+        }
+        try {
+            List<Object> values = redisTemplate.opsForList().range(key, 0, -1);
+            if (values != null) {
+                for (Object value : values) {
+                    if (value instanceof ChatMessage && ((ChatMessage) value).getId() != null) {
+                        messages.add((ChatMessage) value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chat buffer {}: {}", key, e.getMessage());
+        }
+        return messages;
+    }
+}
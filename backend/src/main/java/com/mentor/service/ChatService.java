@@ -1,5 +1,6 @@
 package com.mentor.service;
 
+import com.mentor.config.OutboundCoalescingInterceptor;
 import com.mentor.entity.Application;
 import com.mentor.entity.ChatMessage;
 import com.mentor.mapper.ApplicationMapper;
@@ -9,9 +10,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Chat Service
@@ -29,11 +28,25 @@ public class ChatService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+
+    @Autowired
+    private ChatConversationService chatConversationService;
+
+    @Autowired
+    private ChatUnreadCounterService chatUnreadCounterService;
+
+    @Autowired
+    private ChatArchiveService chatArchiveService;
+
+    @Autowired
+    private ChatResyncService chatResyncService;
+
     /**
      * Send message
-     * 发送消息
+     * 发送消息（先写预写日志并广播，由后台批量落库）
      */
-    @Transactional
     public ChatMessage sendMessage(ChatMessage message) {
         message.setCreateTime(new Date());
         message.setIsRead(false);
@@ -47,8 +60,9 @@ public class ChatService {
             }
         }
 
-        // Save to database
-        chatMessageMapper.insertChatMessage(message);
+        // Save (write-behind)
+        chatMessageWriteBehind.save(message);
+        chatUnreadCounterService.onMessageSent(message);
 
         // Send via WebSocket - 同时发送到两个频道
         if (message.getApplicationId() != null) {
@@ -59,6 +73,7 @@ public class ChatService {
             String directDestination = "/topic/direct/direct_" + message.getStudentId() + "_" + message.getMentorId();
             messagingTemplate.convertAndSend(directDestination, message);
         }
+        chatResyncService.append(message);
 
         return message;
     }
@@ -78,7 +93,76 @@ public class ChatService {
      */
     @Transactional
     public void markAsRead(Long messageId) {
-        chatMessageMapper.markMessageAsRead(messageId);
+        if (chatMessageMapper.markMessageAsRead(messageId) == 0) {
+            return;
+        }
+        ChatMessage message = chatMessageMapper.getMessageById(messageId);
+        if (message != null) {
+            chatConversationService.onMessagesRead(message.getStudentId(), message.getMentorId());
+            chatUnreadCounterService.onMessageRead(message);
+        }
+    }
+
+    /**
+     * Mark application messages as read up to a message id
+     * 将申请聊天中 upToId 及之前发给 readerType 的消息标记为已读
+     */
+    @Transactional
+    public int markApplicationReadUpTo(Integer applicationId, String readerType, Long upToId) {
+        int count = markReadUpTo(applicationId, null, null, readerType, upToId);
+        if (count > 0) {
+            String destination = "/topic/chat/" + applicationId + "/receipts";
+            messagingTemplate.convertAndSend(destination, buildReadReceipt(readerType, upToId, count),
+                    Collections.singletonMap(OutboundCoalescingInterceptor.COALESCE_HEADER, destination + ":" + readerType));
+        }
+        return count;
+    }
+
+    /**
+     * Mark conversation messages as read up to a message id
+     * 将学生-导师会话中 upToId 及之前发给 readerType 的消息标记为已读
+     */
+    @Transactional
+    public int markConversationReadUpTo(Integer studentId, Integer mentorId, String readerType, Long upToId) {
+        int count = markReadUpTo(null, studentId, mentorId, readerType, upToId);
+        if (count > 0) {
+            String destination = "/topic/direct/direct_" + studentId + "_" + mentorId + "/receipts";
+            messagingTemplate.convertAndSend(destination, buildReadReceipt(readerType, upToId, count),
+                    Collections.singletonMap(OutboundCoalescingInterceptor.COALESCE_HEADER, destination + ":" + readerType));
+        }
+        return count;
+    }
+
+    /**
+     * 锁定待标记的未读消息并按会话分组，一条范围 UPDATE 标记已读，再刷新会话未读数与 Redis 计数
+     */
+    private int markReadUpTo(Integer applicationId, Integer studentId, Integer mentorId, String readerType, Long upToId) {
+        List<Map<String, Object>> rows = chatMessageMapper.lockUnreadUpTo(applicationId, studentId, mentorId, readerType, upToId);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int count = chatMessageMapper.markMessagesAsReadUpTo(applicationId, studentId, mentorId, readerType, upToId);
+
+        Set<String> refreshed = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            Object rowStudentId = row.get("studentId");
+            Object rowMentorId = row.get("mentorId");
+            if (rowStudentId != null && rowMentorId != null && refreshed.add(rowStudentId + ":" + rowMentorId)) {
+                chatConversationService.onMessagesRead(((Number) rowStudentId).intValue(), ((Number) rowMentorId).intValue());
+            }
+        }
+        chatUnreadCounterService.onMessagesRead(rows, readerType);
+        return count;
+    }
+
+    private Map<String, Object> buildReadReceipt(String readerType, Long upToId, int count) {
+        Map<String, Object> receipt = new HashMap<>();
+        receipt.put("type", "READ_RECEIPT");
+        receipt.put("readerType", readerType);
+        receipt.put("upToId", upToId);
+        receipt.put("count", count);
+        receipt.put("readTime", new Date());
+        return receipt;
     }
 
     /**
@@ -86,24 +170,25 @@ public class ChatService {
      * 统计未读消息数
      */
     public int countUnreadMessages(Integer applicationId, String receiverType) {
-        return chatMessageMapper.countUnreadMessages(applicationId, receiverType);
+        return chatUnreadCounterService.countByApplication(applicationId, receiverType);
     }
 
     /**
      * Send message by student and mentor IDs
-     * 根据学生ID和导师ID发送消息
+     * 根据学生ID和导师ID发送消息（先写预写日志并广播，由后台批量落库）
      */
-    @Transactional
     public ChatMessage sendMessageByStudentAndMentor(ChatMessage message) {
         message.setCreateTime(new Date());
         message.setIsRead(false);
 
-        // Save to database
-        chatMessageMapper.insertChatMessage(message);
+        // Save (write-behind)
+        chatMessageWriteBehind.save(message);
+        chatUnreadCounterService.onMessageSent(message);
 
         // Send via WebSocket
         String destination = "/topic/chat/" + message.getStudentId() + "/" + message.getMentorId();
         messagingTemplate.convertAndSend(destination, message);
+        chatResyncService.append(message);
 
         return message;
     }
@@ -117,12 +202,93 @@ public class ChatService {
         return chatMessageMapper.getMessagesByStudentAndMentor(studentId, mentorId, offset, limit);
     }
 
+    /**
+     * Get message history by student and mentor IDs (keyset pagination)
+     * 按消息ID游标获取学生-导师聊天记录（合并 MySQL 热数据与归档）
+     */
+    public Map<String, Object> getHistoryByStudentAndMentor(Integer studentId, Integer mentorId,
+                                                            Long beforeId, Long afterId, Integer limit) {
+        boolean forward = afterId != null;
+        List<ChatMessage> hot = chatMessageMapper.getMessagesByStudentAndMentorKeyset(
+                studentId, mentorId, forward ? null : beforeId, afterId, limit + 1);
+        List<ChatMessage> cold = forward
+                ? chatArchiveService.findAfter(studentId, mentorId, null, afterId, limit + 1)
+                : chatArchiveService.findBefore(studentId, mentorId, null, beforeId, limit + 1);
+        return buildHistoryPage(mergeById(hot, cold, forward, limit + 1), forward, limit);
+    }
+
+    /**
+     * Get message history by application ID (keyset pagination)
+     * 按消息ID游标获取申请聊天记录（合并 MySQL 热数据与归档）
+     */
+    public Map<String, Object> getHistoryByApplication(Integer applicationId, Long beforeId, Long afterId, Integer limit) {
+        boolean forward = afterId != null;
+        List<ChatMessage> hot = chatMessageMapper.getMessagesByApplicationIdKeyset(
+                applicationId, forward ? null : beforeId, afterId, limit + 1);
+        List<ChatMessage> cold = Collections.emptyList();
+        Application application = applicationMapper.getApplicationById(applicationId);
+        if (application != null) {
+            cold = forward
+                    ? chatArchiveService.findAfter(application.getStudentId(), application.getMentorId(),
+                    applicationId, afterId, limit + 1)
+                    : chatArchiveService.findBefore(application.getStudentId(), application.getMentorId(),
+                    applicationId, beforeId, limit + 1);
+        }
+        return buildHistoryPage(mergeById(hot, cold, forward, limit + 1), forward, limit);
+    }
+
+    /**
+     * 按 ID 归并热数据与归档（未读的旧消息留在 MySQL，两边 ID 区间可能交错），去重后截取 max 条
+     * forward 为 true 时升序，否则降序
+     */
+    private List<ChatMessage> mergeById(List<ChatMessage> hot, List<ChatMessage> cold, boolean forward, int max) {
+        TreeMap<Long, ChatMessage> merged = forward ? new TreeMap<>() : new TreeMap<>(Comparator.reverseOrder());
+        for (ChatMessage message : hot) {
+            merged.put(message.getId(), message);
+        }
+        for (ChatMessage message : cold) {
+            merged.putIfAbsent(message.getId(), message);
+        }
+        List<ChatMessage> result = new ArrayList<>(Math.min(max, merged.size()));
+        for (ChatMessage message : merged.values()) {
+            if (result.size() >= max) {
+                break;
+            }
+            result.add(message);
+        }
+        return result;
+    }
+
+    /**
+     * 组装一页聊天记录（多查询一条判断是否还有更多）
+     * 返回的消息始终按时间升序；向前翻页时 nextCursor 为本页最早消息ID（下一次作为 beforeId），
+     * 向后追加时为本页最新消息ID（下一次作为 afterId）
+     */
+    private Map<String, Object> buildHistoryPage(List<ChatMessage> messages, boolean forward, int limit) {
+        boolean hasMore = messages.size() > limit;
+        List<ChatMessage> items = new ArrayList<>(hasMore ? messages.subList(0, limit) : messages);
+        if (!forward) {
+            Collections.reverse(items);
+        }
+
+        Long nextCursor = null;
+        if (!items.isEmpty()) {
+            nextCursor = forward ? items.get(items.size() - 1).getId() : items.get(0).getId();
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        page.put("hasMore", hasMore);
+        return page;
+    }
+
     /**
      * Count unread messages by student and mentor IDs
      * 根据学生ID和导师ID统计未读消息数
      */
     public int countUnreadMessagesByStudentAndMentor(Integer studentId, Integer mentorId, String receiverType) {
-        return chatMessageMapper.countUnreadMessagesByStudentAndMentor(studentId, mentorId, receiverType);
+        return chatUnreadCounterService.countByConversation(studentId, mentorId, receiverType);
     }
 
     /**
@@ -130,7 +296,7 @@ public class ChatService {
      * 获取用户的聊天会话列表
      */
     public List<Map<String, Object>> getConversations(Integer userId, String userType) {
-        return chatMessageMapper.getConversationsByUserId(userId, userType);
+        return chatConversationService.getConversations(userId, userType);
     }
 
     /**
@@ -138,6 +304,6 @@ public class ChatService {
      * 统计用户的总未读消息数
      */
     public int countTotalUnreadMessages(Integer userId, String userType) {
-        return chatMessageMapper.countTotalUnreadMessages(userId, userType);
+        return chatUnreadCounterService.countTotal(userId, userType);
     }
 }
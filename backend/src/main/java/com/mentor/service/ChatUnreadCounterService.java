@@ -0,0 +1,393 @@
+package com.mentor.service;
+
+import com.mentor.entity.ChatConversation;
+import com.mentor.entity.ChatMessage;
+import com.mentor.entity.Mentor;
+import com.mentor.entity.Student;
+import com.mentor.mapper.ChatConversationMapper;
+import com.mentor.mapper.ChatMessageMapper;
+import com.mentor.mapper.MentorMapper;
+import com.mentor.mapper.StudentMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Chat Unread Counter Service
+ * 基于 Redis 哈希的未读计数：发送时原子递增，已读时递减，角标轮询只读 Redis
+ *
+ * - chat:unread:conv     field {studentId}:{mentorId}:{receiverType}
+ * - chat:unread:app      field {applicationId}:{receiverType}
+ * - chat:unread:student  field {studentId}（学生总未读）
+ * - chat:unread:mentor   field {mentorId}（导师总未读）
+ *
+ * 递增与递减都只做 HINCRBY，不在递减后删除字段（否则可能删掉并发的 +1），读取时把负值按 0 处理。
+ * 每次增减同时在 {key}:ver 哈希中递增该字段的版本号（同一脚本内原子完成）。
+ *
+ * 定时任务持有 Redis 锁时从 MySQL 重新计算并修正漏记或重复计数，顺序为：
+ * 先读各字段版本号，再读预写日志中尚未落库的消息，最后读 MySQL 快照。
+ * 涉及未落库消息的字段跳过（已计入 Redis、尚未计入 MySQL）；
+ * 修正由脚本逐字段执行，版本号与读取时不同的字段说明快照之后有过增减，同样跳过，留给下一次校准。
+ * 发送时先写预写日志再递增计数，因此读版本号之前发出的消息要么在 MySQL 快照中，要么在日志中。
+ * 首次校准完成前或 Redis 不可用时读取回退到数据库。
+ */
+@Slf4j
+@Service
+public class ChatUnreadCounterService {
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Autowired
+    private ChatConversationMapper chatConversationMapper;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+
+    @Value("${chat.unread.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${chat.unread.reconcile-lock-ttl-ms:120000}")
+    private Long reconcileLockTtlMs;
+
+    private static final String KEY_CONVERSATION = "chat:unread:conv";
+    private static final String KEY_APPLICATION = "chat:unread:app";
+    private static final String KEY_STUDENT_TOTAL = "chat:unread:student";
+    private static final String KEY_MENTOR_TOTAL = "chat:unread:mentor";
+    private static final String KEY_READY = "chat:unread:ready";
+    private static final String KEY_RECONCILE_LOCK = "chat:unread:reconcile:lock";
+
+    private static final String VERSION_SUFFIX = ":ver";
+    private static final int CORRECT_BATCH_SIZE = 500;
+
+    // 计数与版本号一起递增
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hincrby', KEYS[2], ARGV[1], 1) "
+                    + "return redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2])", Long.class);
+    // ARGV 为 (字段, 读取快照前的版本号, 期望值) 三元组；版本号未变时才修正，期望值不大于 0 时删除字段与版本号
+    private static final DefaultRedisScript<Long> CORRECT_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 "
+                    + "for i = 1, #ARGV, 3 do "
+                    + "local f = ARGV[i] "
+                    + "local v = redis.call('hget', KEYS[2], f) or '' "
+                    + "if v == ARGV[i + 1] then "
+                    + "local t = tonumber(ARGV[i + 2]) "
+                    + "if t > 0 then redis.call('hset', KEYS[1], f, t) "
+                    + "else redis.call('hdel', KEYS[1], f) redis.call('hdel', KEYS[2], f) end "
+                    + "n = n + 1 end "
+                    + "end return n", Long.class);
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private static final String STUDENT = "student";
+    private static final String MENTOR = "mentor";
+
+    // userId -> 学生/导师 ID（映射不会变化，进程内缓存）
+    private final Map<Integer, Integer> studentIdByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> mentorIdByUser = new ConcurrentHashMap<>();
+
+    /**
+     * 新消息：接收方的会话、申请与总未读数各加一
+     */
+    public void onMessageSent(ChatMessage message) {
+        adjust(message, 1);
+    }
+
+    /**
+     * 消息由未读变为已读：各计数减一
+     */
+    public void onMessageRead(ChatMessage message) {
+        adjust(message, -1);
+    }
+
+    /**
+     * 批量已读：rows 为按申请与会话分组的已读条数（applicationId、studentId、mentorId、unreadCount）
+     */
+    public void onMessagesRead(List<Map<String, Object>> rows, String readerType) {
+        for (Map<String, Object> row : rows) {
+            adjust(toInteger(row.get("applicationId")), toInteger(row.get("studentId")),
+                    toInteger(row.get("mentorId")), normalize(readerType),
+                    -((Number) row.get("unreadCount")).longValue());
+        }
+    }
+
+    /**
+     * Count unread messages of an application chat
+     */
+    public int countByApplication(Integer applicationId, String receiverType) {
+        Integer count = read(KEY_APPLICATION, applicationId + ":" + normalize(receiverType));
+        return count != null ? count : chatMessageMapper.countUnreadMessages(applicationId, receiverType);
+    }
+
+    /**
+     * Count unread messages of a student-mentor conversation
+     */
+    public int countByConversation(Integer studentId, Integer mentorId, String receiverType) {
+        Integer count = read(KEY_CONVERSATION, studentId + ":" + mentorId + ":" + normalize(receiverType));
+        return count != null ? count
+                : chatMessageMapper.countUnreadMessagesByStudentAndMentor(studentId, mentorId, receiverType);
+    }
+
+    /**
+     * Count total unread messages for a user
+     */
+    public int countTotal(Integer userId, String userType) {
+        String type = normalize(userType);
+        Integer entityId = STUDENT.equals(type) ? resolveStudentId(userId)
+                : MENTOR.equals(type) ? resolveMentorId(userId) : null;
+        if (entityId != null) {
+            Integer count = read(STUDENT.equals(type) ? KEY_STUDENT_TOTAL : KEY_MENTOR_TOTAL, String.valueOf(entityId));
+            if (count != null) {
+                return count;
+            }
+        }
+        return chatConversationMapper.countTotalUnreadMessages(userId, userType);
+    }
+
+    /**
+     * 定时从 MySQL 校准所有计数（多节点部署时同一时刻只有一个节点执行）
+     */
+    @Scheduled(fixedDelayString = "${chat.unread.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled || redisTemplate == null) {
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(
+                    KEY_RECONCILE_LOCK, token, reconcileLockTtlMs, TimeUnit.MILLISECONDS))) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to acquire unread reconcile lock: {}", e.getMessage());
+            return;
+        }
+        try {
+            // 顺序不能调换：版本号 → 未落库消息 → MySQL
+            List<String> keys = Arrays.asList(KEY_CONVERSATION, KEY_APPLICATION, KEY_STUDENT_TOTAL, KEY_MENTOR_TOTAL);
+            Map<String, Map<Object, Object>> versions = new HashMap<>();
+            for (String key : keys) {
+                versions.put(key, redisTemplate.opsForHash().entries(key + VERSION_SUFFIX));
+            }
+            List<ChatMessage> pending = chatMessageWriteBehind.pendingMessages();
+            if (pending == null) {
+                log.warn("Skipping unread reconcile: chat WAL is unreadable");
+                return;
+            }
+            Map<String, Set<String>> skipped = new HashMap<>();
+            for (ChatMessage message : pending) {
+                forEachField(message.getApplicationId(), message.getStudentId(), message.getMentorId(),
+                        receiverOf(message), (key, field) -> skipped.computeIfAbsent(key, k -> new HashSet<>()).add(field));
+            }
+
+            Map<String, Object> conversations = new HashMap<>();
+            Map<String, Integer> studentTotals = new HashMap<>();
+            Map<String, Integer> mentorTotals = new HashMap<>();
+            for (ChatConversation c : chatConversationMapper.getUnreadConversations()) {
+                int forStudent = c.getUnreadForStudent() != null ? c.getUnreadForStudent() : 0;
+                int forMentor = c.getUnreadForMentor() != null ? c.getUnreadForMentor() : 0;
+                if (forStudent > 0) {
+                    conversations.put(c.getStudentId() + ":" + c.getMentorId() + ":" + STUDENT, forStudent);
+                    studentTotals.merge(String.valueOf(c.getStudentId()), forStudent, Integer::sum);
+                }
+                if (forMentor > 0) {
+                    conversations.put(c.getStudentId() + ":" + c.getMentorId() + ":" + MENTOR, forMentor);
+                    mentorTotals.merge(String.valueOf(c.getMentorId()), forMentor, Integer::sum);
+                }
+            }
+
+            Map<String, Object> applications = new HashMap<>();
+            for (Map<String, Object> row : chatMessageMapper.countUnreadGroupedByApplication()) {
+                // 按发送方统计，未读计入另一方
+                String receiver = STUDENT.equals(normalize((String) row.get("senderType"))) ? MENTOR : STUDENT;
+                applications.merge(row.get("applicationId") + ":" + receiver,
+                        ((Number) row.get("unreadCount")).intValue(), (a, b) -> (Integer) a + (Integer) b);
+            }
+
+            Map<String, Map<String, Object>> expected = new HashMap<>();
+            expected.put(KEY_CONVERSATION, conversations);
+            expected.put(KEY_APPLICATION, applications);
+            expected.put(KEY_STUDENT_TOTAL, new HashMap<>(studentTotals));
+            expected.put(KEY_MENTOR_TOTAL, new HashMap<>(mentorTotals));
+            int corrected = 0;
+            for (String key : keys) {
+                corrected += correct(key, expected.get(key), versions.get(key),
+                        skipped.getOrDefault(key, Collections.emptySet()));
+            }
+            redisTemplate.opsForValue().set(KEY_READY, System.currentTimeMillis());
+            log.debug("Unread counters reconciled: {} fields corrected, {} pending messages skipped",
+                    corrected, pending.size());
+        } catch (Exception e) {
+            log.error("Failed to reconcile unread counters", e);
+        } finally {
+            try {
+                redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(KEY_RECONCILE_LOCK), token);
+            } catch (Exception e) {
+                log.warn("Failed to release unread reconcile lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void adjust(ChatMessage message, long delta) {
+        adjust(message.getApplicationId(), message.getStudentId(), message.getMentorId(), receiverOf(message), delta);
+    }
+
+    private void adjust(Integer applicationId, Integer studentId, Integer mentorId, String receiver, long delta) {
+        if (!enabled || redisTemplate == null) {
+            return;
+        }
+        try {
+            forEachField(applicationId, studentId, mentorId, receiver, (key, field) -> increment(key, field, delta));
+        } catch (Exception e) {
+            // 计数失败由定时校准修正
+            log.warn("Failed to update unread counters for conversation {}-{}: {}", studentId, mentorId, e.getMessage());
+        }
+    }
+
+    /**
+     * 一条消息影响的计数字段：申请、会话与接收方总数
+     */
+    private static void forEachField(Integer applicationId, Integer studentId, Integer mentorId, String receiver,
+                                     BiConsumer<String, String> action) {
+        if (!STUDENT.equals(receiver) && !MENTOR.equals(receiver)) {
+            return;
+        }
+        if (applicationId != null) {
+            action.accept(KEY_APPLICATION, applicationId + ":" + receiver);
+        }
+        if (studentId != null && mentorId != null) {
+            action.accept(KEY_CONVERSATION, studentId + ":" + mentorId + ":" + receiver);
+            if (STUDENT.equals(receiver)) {
+                action.accept(KEY_STUDENT_TOTAL, String.valueOf(studentId));
+            } else {
+                action.accept(KEY_MENTOR_TOTAL, String.valueOf(mentorId));
+            }
+        }
+    }
+
+    private static String receiverOf(ChatMessage message) {
+        String sender = normalize(message.getSenderType());
+        return STUDENT.equals(sender) ? MENTOR : MENTOR.equals(sender) ? STUDENT : null;
+    }
+
+    private void increment(String key, String field, long delta) {
+        // 不在此处删除归零字段：HINCRBY 与 HDEL 之间的并发 +1 会被一并删掉；负值在读取时按 0 处理
+        redisTemplate.execute(INCREMENT_SCRIPT, new StringRedisSerializer(), new GenericToStringSerializer<>(Long.class),
+                Arrays.asList(key, key + VERSION_SUFFIX), field, String.valueOf(delta));
+    }
+
+    /**
+     * 读取计数：未完成首次校准或 Redis 不可用时返回 null（由调用方回退到数据库）
+     */
+    private Integer read(String key, String field) {
+        if (!enabled || redisTemplate == null) {
+            return null;
+        }
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(KEY_READY))) {
+                return null;
+            }
+            Object value = redisTemplate.opsForHash().get(key, field);
+            return value instanceof Number ? Math.max(0, ((Number) value).intValue()) : 0;
+        } catch (Exception e) {
+            log.warn("Failed to read unread counter {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按字段把计数修正为期望值：跳过涉及未落库消息的字段，其余字段在版本号未变时由脚本原子写入，
+     * 期望值不大于 0 的字段直接删除；返回实际修正的字段数
+     */
+    private int correct(String key, Map<String, Object> expected, Map<Object, Object> versions, Set<String> skipped) {
+        Map<Object, Object> current = redisTemplate.opsForHash().entries(key);
+        Set<String> fields = new HashSet<>(expected.keySet());
+        for (Object field : current.keySet()) {
+            fields.add(String.valueOf(field));
+        }
+        List<String> args = new ArrayList<>();
+        int corrected = 0;
+        for (String field : fields) {
+            if (skipped.contains(field)) {
+                continue;
+            }
+            Object want = expected.get(field);
+            Object have = current.get(field);
+            long target = want instanceof Number ? ((Number) want).longValue() : 0L;
+            if (have instanceof Number && ((Number) have).longValue() == target && target > 0) {
+                continue;
+            }
+            Object version = versions.get(field);
+            args.add(field);
+            args.add(version != null ? String.valueOf(version) : "");
+            args.add(String.valueOf(target));
+            if (args.size() >= CORRECT_BATCH_SIZE * 3) {
+                corrected += runCorrect(key, args);
+                args.clear();
+            }
+        }
+        if (!args.isEmpty()) {
+            corrected += runCorrect(key, args);
+        }
+        return corrected;
+    }
+
+    private int runCorrect(String key, List<String> args) {
+        Long n = redisTemplate.execute(CORRECT_SCRIPT, new StringRedisSerializer(),
+                new GenericToStringSerializer<>(Long.class), Arrays.asList(key, key + VERSION_SUFFIX), args.toArray());
+        return n != null ? n.intValue() : 0;
+    }
+
+    private Integer resolveStudentId(Integer userId) {
+        Integer cached = studentIdByUser.get(userId);
+        if (cached == null) {
+            Student student = studentMapper.getStudentByUserId(userId);
+            if (student != null) {
+                cached = student.getId();
+                studentIdByUser.put(userId, cached);
+            }
+        }
+        return cached;
+    }
+
+    private Integer resolveMentorId(Integer userId) {
+        Integer cached = mentorIdByUser.get(userId);
+        if (cached == null) {
+            Mentor mentor = mentorMapper.getMentorByUserId(userId);
+            if (mentor != null) {
+                cached = mentor.getId();
+                mentorIdByUser.put(userId, cached);
+            }
+        }
+        return cached;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    private static String normalize(String type) {
+        return type == null ? "" : type.trim().toLowerCase(Locale.ROOT);
+    }
+}
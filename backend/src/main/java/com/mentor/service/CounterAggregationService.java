@@ -0,0 +1,179 @@
+package com.mentor.service;
+
+import com.mentor.entity.Mentor;
+import com.mentor.entity.Rating;
+import com.mentor.mapper.MentorMapper;
+import com.mentor.mapper.RatingMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter Aggregation Service
+ * 计数写合并：浏览数、有用数等高频递增先累加在内存中，定时批量写回
+ *
+ * 每个计数按实体 ID 维护一个 LongAdder，递增只做内存加法；定时任务读取各实体的增量，
+ * 以一条 CASE 语句批量执行 “SET xxx = xxx + delta”，成功后减去已写入的部分
+ * （写入期间新增的递增保留到下一轮），失败时保留等待重试；减到 0 的实体从表中移除，空表时直接跳过。
+ * 递增与扣减都在 ConcurrentHashMap.compute 中完成（同一键串行），移除归零项时不会丢失并发的递增。
+ * 读取时把本节点尚未写回的增量合并到数据库值上。
+ */
+@Slf4j
+@Service
+public class CounterAggregationService {
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Autowired
+    private RatingMapper ratingMapper;
+
+    @Value("${counters.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${counters.flush-batch-size:500}")
+    private Integer flushBatchSize;
+
+    // mentorId -> 待写回的浏览数
+    private final Map<Integer, LongAdder> mentorViews = new ConcurrentHashMap<>();
+    // ratingId -> 待写回的有用数
+    private final Map<Integer, LongAdder> ratingHelpful = new ConcurrentHashMap<>();
+
+    /**
+     * 导师浏览数加一
+     */
+    public void incrementMentorView(Integer mentorId) {
+        if (!enabled) {
+            mentorMapper.incrementViewCount(mentorId);
+            return;
+        }
+        increment(mentorViews, mentorId);
+    }
+
+    /**
+     * 评价有用数加一
+     */
+    public void incrementRatingHelpful(Integer ratingId) {
+        if (!enabled) {
+            ratingMapper.incrementHelpfulCount(ratingId);
+            return;
+        }
+        increment(ratingHelpful, ratingId);
+    }
+
+    /**
+     * 合并未写回的浏览数
+     */
+    public Mentor withPendingViews(Mentor mentor) {
+        if (mentor != null && mentor.getId() != null) {
+            long pending = pending(mentorViews, mentor.getId());
+            if (pending != 0) {
+                mentor.setViewCount((mentor.getViewCount() != null ? mentor.getViewCount() : 0) + (int) pending);
+            }
+        }
+        return mentor;
+    }
+
+    public List<Mentor> withPendingViews(List<Mentor> mentors) {
+        if (mentors != null && !mentorViews.isEmpty()) {
+            mentors.forEach(this::withPendingViews);
+        }
+        return mentors;
+    }
+
+    /**
+     * 合并未写回的有用数
+     */
+    public Rating withPendingHelpful(Rating rating) {
+        if (rating != null && rating.getId() != null) {
+            long pending = pending(ratingHelpful, rating.getId());
+            if (pending != 0) {
+                rating.setHelpfulCount((rating.getHelpfulCount() != null ? rating.getHelpfulCount() : 0) + (int) pending);
+            }
+        }
+        return rating;
+    }
+
+    public List<Rating> withPendingHelpful(List<Rating> ratings) {
+        if (ratings != null && !ratingHelpful.isEmpty()) {
+            ratings.forEach(this::withPendingHelpful);
+        }
+        return ratings;
+    }
+
+    /**
+     * 定时写回所有计数；与关闭时的写回互斥，避免同一增量被写入两次
+     */
+    @Scheduled(fixedDelayString = "${counters.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        flush(mentorViews, deltas -> mentorMapper.addViewCounts(deltas), "mentor view");
+        flush(ratingHelpful, deltas -> ratingMapper.addHelpfulCounts(deltas), "rating helpful");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    private void flush(Map<Integer, LongAdder> counters, BatchWriter writer, String name) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        // 快照各实体的增量；快照之后的递增留在 LongAdder 中
+        List<Map<String, Object>> batch = new ArrayList<>();
+        for (Map.Entry<Integer, LongAdder> entry : counters.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta == 0) {
+                continue;
+            }
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", entry.getKey());
+            row.put("delta", delta);
+            batch.add(row);
+        }
+        // 按 ID 顺序写入，减少多节点并发写回时的锁等待
+        batch.sort(Comparator.comparing(row -> (Integer) row.get("id")));
+
+        for (int from = 0; from < batch.size(); from += flushBatchSize) {
+            List<Map<String, Object>> chunk = batch.subList(from, Math.min(batch.size(), from + flushBatchSize));
+            try {
+                writer.write(chunk);
+                for (Map<String, Object> row : chunk) {
+                    long written = (Long) row.get("delta");
+                    counters.computeIfPresent((Integer) row.get("id"), (id, adder) -> {
+                        adder.add(-written);
+                        return adder.sum() == 0 ? null : adder;
+                    });
+                }
+            } catch (Exception e) {
+                // 增量保留在内存中，下一轮重试
+                log.warn("Failed to flush {} {} counters: {}", chunk.size(), name, e.getMessage());
+            }
+        }
+    }
+
+    private static void increment(Map<Integer, LongAdder> counters, Integer id) {
+        counters.compute(id, (k, adder) -> {
+            LongAdder value = adder != null ? adder : new LongAdder();
+            value.increment();
+            return value;
+        });
+    }
+
+    private static long pending(Map<Integer, LongAdder> counters, Integer id) {
+        LongAdder adder = counters.get(id);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter {
+        void write(List<Map<String, Object>> deltas);
+    }
+}
@@ -237,6 +237,51 @@ public class EmbeddingService {
         }
     }
 
+    /**
+     * Batch read cached mentor embeddings
+     * 批量读取已缓存的导师向量（一次 MGET），未缓存的位置为 null
+     */
+    public List<List<Float>> getCachedMentorEmbeddings(List<Mentor> mentors) {
+        List<String> keys = new ArrayList<>(mentors.size());
+        for (Mentor mentor : mentors) {
+            keys.add(REDIS_KEY_PREFIX_MENTOR + mentor.getId());
+        }
+        return getCachedEmbeddings(keys);
+    }
+
+    /**
+     * Batch read cached student embeddings
+     * 批量读取已缓存的学生向量（一次 MGET），未缓存的位置为 null
+     */
+    public List<List<Float>> getCachedStudentEmbeddings(List<Student> students) {
+        List<String> keys = new ArrayList<>(students.size());
+        for (Student student : students) {
+            keys.add(REDIS_KEY_PREFIX_STUDENT + student.getId());
+        }
+        return getCachedEmbeddings(keys);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Float>> getCachedEmbeddings(List<String> keys) {
+        List<List<Float>> result = new ArrayList<>(Collections.nCopies(keys.size(), (List<Float>) null));
+        if (redisTemplate == null || keys.isEmpty()) {
+            return result;
+        }
+        try {
+            List<Object> cached = redisTemplate.opsForValue().multiGet(keys);
+            if (cached != null) {
+                for (int i = 0; i < cached.size() && i < keys.size(); i++) {
+                    if (cached.get(i) instanceof List) {
+                        result.set(i, (List<Float>) cached.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to batch read cached embeddings: {}", e.getMessage());
+        }
+        return result;
+    }
+
     /**
      * Get cached embedding from Redis
      * 从Redis获取缓存的向量
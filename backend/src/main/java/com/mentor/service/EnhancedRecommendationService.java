@@ -12,7 +12,11 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +39,9 @@ public class EnhancedRecommendationService {
     @Autowired
     private LLMService llmService;
 
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
     @Autowired
     private MentorMapper mentorMapper;
 
@@ -47,6 +54,18 @@ public class EnhancedRecommendationService {
     @Value("${recommendation.cache-ttl:3600}")
     private Long cacheTtl;
 
+    @Value("${recommendation.budget.total-ms:800}")
+    private Long budgetMs;
+
+    @Value("${recommendation.budget.reasons-min-ms:300}")
+    private Long reasonsMinMs;
+
+    @Value("${recommendation.reasons.max-parallel:5}")
+    private Integer reasonsMaxParallel;
+
+    @Value("${recommendation.budget.degraded-cache-ttl:60}")
+    private Long degradedCacheTtl;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String REDIS_KEY_PREFIX_MENTOR_REC = "recommendation:mentor:";
@@ -57,10 +76,21 @@ public class EnhancedRecommendationService {
      * 为学生获取导师推荐
      */
     public List<Map<String, Object>> getMentorRecommendations(Integer studentId, Integer limit) {
+        return getMentorRecommendations(studentId, limit, RecommendationBudget.start(budgetMs));
+    }
+
+    /**
+     * Get mentor recommendations for student within a latency budget
+     * 在时间预算内为学生获取导师推荐
+     */
+    public List<Map<String, Object>> getMentorRecommendations(Integer studentId, Integer limit,
+                                                              RecommendationBudget budget) {
         try {
             // Check cache first
+            long stageStart = System.nanoTime();
             String cacheKey = REDIS_KEY_PREFIX_MENTOR_REC + studentId;
             List<Map<String, Object>> cachedResult = getCachedRecommendations(cacheKey);
+            budget.recordStage(RecommendationBudget.STAGE_CACHE, stageStart);
             if (cachedResult != null && !cachedResult.isEmpty()) {
                 log.info("Using cached mentor recommendations for student: {}", studentId);
                 return cachedResult.stream().limit(limit).collect(Collectors.toList());
@@ -73,6 +103,7 @@ public class EnhancedRecommendationService {
             }
 
             // Generate student embedding
+            stageStart = System.nanoTime();
             List<Float> studentEmbedding = embeddingService.generateStudentEmbedding(student);
 
             // Sync student to Milvus if needed
@@ -80,10 +111,16 @@ public class EnhancedRecommendationService {
 
             // Search for similar mentors in Milvus
             List<Map<String, Object>> similarMentors = milvusService.searchSimilarMentors(studentEmbedding, 50);
+            budget.recordStage(RecommendationBudget.STAGE_VECTOR_SEARCH, stageStart);
 
-            // Score and rank mentors
+            // Score and rank mentors (results arrive in similarity order, stop early once the budget is spent)
+            stageStart = System.nanoTime();
             List<Map<String, Object>> scoredMentors = new ArrayList<>();
             for (Map<String, Object> milvusResult : similarMentors) {
+                if (budget.isExhausted() && scoredMentors.size() >= limit) {
+                    budget.degrade(RecommendationBudget.STAGE_HYDRATION, "truncated");
+                    break;
+                }
                 Long mentorId = (Long) milvusResult.get("id");
                 Double vectorSimilarity = (Double) milvusResult.get("score");
 
@@ -104,6 +141,7 @@ public class EnhancedRecommendationService {
 
                 scoredMentors.add(recommendation);
             }
+            budget.recordStage(RecommendationBudget.STAGE_HYDRATION, stageStart);
 
             // Sort by total score
             scoredMentors.sort((r1, r2) -> Double.compare(
@@ -111,21 +149,17 @@ public class EnhancedRecommendationService {
                     (Double) r1.get("score")
             ));
 
-            // Take top 20 for LLM analysis
-            List<Map<String, Object>> topMentors = scoredMentors.stream()
-                    .limit(20)
-                    .collect(Collectors.toList());
-
-            // Generate recommendation reasons using LLM
-            generateMentorRecommendationReasons(student, topMentors);
-
             // Take final top N
-            List<Map<String, Object>> finalRecommendations = topMentors.stream()
+            List<Map<String, Object>> finalRecommendations = scoredMentors.stream()
                     .limit(limit)
                     .collect(Collectors.toList());
 
-            // Cache the results
-            cacheRecommendations(cacheKey, finalRecommendations);
+            // Generate recommendation reasons using LLM (only for the items actually returned)
+            generateMentorRecommendationReasons(student, finalRecommendations, budget);
+
+            // Cache the results (degraded results are cached briefly)
+            cacheRecommendations(cacheKey, finalRecommendations,
+                    budget.getDegradations().isEmpty() ? cacheTtl : degradedCacheTtl);
 
             log.info("Generated {} mentor recommendations for student: {}", finalRecommendations.size(), studentId);
             return finalRecommendations;
@@ -133,6 +167,8 @@ public class EnhancedRecommendationService {
         } catch (Exception e) {
             log.error("Failed to get mentor recommendations for student: {}", studentId, e);
             throw new RuntimeException("Failed to get mentor recommendations", e);
+        } finally {
+            recommendationMetrics.record(budget);
         }
     }
 
@@ -141,10 +177,21 @@ public class EnhancedRecommendationService {
      * 为导师获取学生推荐
      */
     public List<Map<String, Object>> getStudentRecommendations(Integer mentorId, Integer limit) {
+        return getStudentRecommendations(mentorId, limit, RecommendationBudget.start(budgetMs));
+    }
+
+    /**
+     * Get student recommendations for mentor within a latency budget
+     * 在时间预算内为导师获取学生推荐
+     */
+    public List<Map<String, Object>> getStudentRecommendations(Integer mentorId, Integer limit,
+                                                               RecommendationBudget budget) {
         try {
             // Check cache first
+            long stageStart = System.nanoTime();
             String cacheKey = REDIS_KEY_PREFIX_STUDENT_REC + mentorId;
             List<Map<String, Object>> cachedResult = getCachedRecommendations(cacheKey);
+            budget.recordStage(RecommendationBudget.STAGE_CACHE, stageStart);
             if (cachedResult != null && !cachedResult.isEmpty()) {
                 log.info("Using cached student recommendations for mentor: {}", mentorId);
                 return cachedResult.stream().limit(limit).collect(Collectors.toList());
@@ -157,6 +204,7 @@ public class EnhancedRecommendationService {
             }
 
             // Generate mentor embedding
+            stageStart = System.nanoTime();
             List<Float> mentorEmbedding = embeddingService.generateMentorEmbedding(mentor);
 
             // Sync mentor to Milvus if needed
@@ -164,10 +212,16 @@ public class EnhancedRecommendationService {
 
             // Search for similar students in Milvus
             List<Map<String, Object>> similarStudents = milvusService.searchSimilarStudents(mentorEmbedding, 50);
+            budget.recordStage(RecommendationBudget.STAGE_VECTOR_SEARCH, stageStart);
 
-            // Score and rank students
+            // Score and rank students (results arrive in similarity order, stop early once the budget is spent)
+            stageStart = System.nanoTime();
             List<Map<String, Object>> scoredStudents = new ArrayList<>();
             for (Map<String, Object> milvusResult : similarStudents) {
+                if (budget.isExhausted() && scoredStudents.size() >= limit) {
+                    budget.degrade(RecommendationBudget.STAGE_HYDRATION, "truncated");
+                    break;
+                }
                 Long studentId = (Long) milvusResult.get("id");
                 Double vectorSimilarity = (Double) milvusResult.get("score");
 
@@ -188,6 +242,7 @@ public class EnhancedRecommendationService {
 
                 scoredStudents.add(recommendation);
             }
+            budget.recordStage(RecommendationBudget.STAGE_HYDRATION, stageStart);
 
             // Sort by total score
             scoredStudents.sort((r1, r2) -> Double.compare(
@@ -195,21 +250,17 @@ public class EnhancedRecommendationService {
                     (Double) r1.get("score")
             ));
 
-            // Take top 20 for LLM analysis
-            List<Map<String, Object>> topStudents = scoredStudents.stream()
-                    .limit(20)
-                    .collect(Collectors.toList());
-
-            // Generate recommendation reasons using LLM
-            generateStudentRecommendationReasons(mentor, topStudents);
-
             // Take final top N
-            List<Map<String, Object>> finalRecommendations = topStudents.stream()
+            List<Map<String, Object>> finalRecommendations = scoredStudents.stream()
                     .limit(limit)
                     .collect(Collectors.toList());
 
-            // Cache the results
-            cacheRecommendations(cacheKey, finalRecommendations);
+            // Generate recommendation reasons using LLM (only for the items actually returned)
+            generateStudentRecommendationReasons(mentor, finalRecommendations, budget);
+
+            // Cache the results (degraded results are cached briefly)
+            cacheRecommendations(cacheKey, finalRecommendations,
+                    budget.getDegradations().isEmpty() ? cacheTtl : degradedCacheTtl);
 
             log.info("Generated {} student recommendations for mentor: {}", finalRecommendations.size(), mentorId);
             return finalRecommendations;
@@ -217,6 +268,8 @@ public class EnhancedRecommendationService {
         } catch (Exception e) {
             log.error("Failed to get student recommendations for mentor: {}", mentorId, e);
             throw new RuntimeException("Failed to get student recommendations", e);
+        } finally {
+            recommendationMetrics.record(budget);
         }
     }
 
@@ -266,68 +319,140 @@ public class EnhancedRecommendationService {
 
     /**
      * Generate recommendation reasons for mentors using LLM
-     * 使用LLM生成导师推荐理由
+     * 使用LLM并行生成导师推荐理由，剩余预算不足或超时的条目改用模板理由
      */
-    private void generateMentorRecommendationReasons(Student student, List<Map<String, Object>> recommendations) {
-        for (Map<String, Object> recommendation : recommendations) {
-            try {
-                Mentor mentor = (Mentor) recommendation.get("mentor");
-                @SuppressWarnings("unchecked")
-                Map<String, Double> matchDetails = (Map<String, Double>) recommendation.get("matchDetails");
-
-                // Build prompt for LLM
-                String prompt = buildMentorRecommendationPrompt(student, mentor, matchDetails);
+    @SuppressWarnings("unchecked")
+    private void generateMentorRecommendationReasons(Student student, List<Map<String, Object>> recommendations,
+                                                     RecommendationBudget budget) {
+        generateReasons(recommendations,
+                recommendation -> buildMentorRecommendationPrompt(student, (Mentor) recommendation.get("mentor"),
+                        (Map<String, Double>) recommendation.get("matchDetails")),
+                "该导师的研究方向与您的兴趣高度匹配，值得考虑。", budget);
+    }
 
-                // Call LLM to generate reason
-                String reason = llmService.callLLM(prompt);
+    /**
+     * Generate recommendation reasons for students using LLM
+     * 使用LLM并行生成学生推荐理由，剩余预算不足或超时的条目改用模板理由
+     */
+    @SuppressWarnings("unchecked")
+    private void generateStudentRecommendationReasons(Mentor mentor, List<Map<String, Object>> recommendations,
+                                                      RecommendationBudget budget) {
+        generateReasons(recommendations,
+                recommendation -> buildStudentRecommendationPrompt(mentor, (Student) recommendation.get("student"),
+                        (Map<String, Double>) recommendation.get("matchDetails")),
+                "该学生的研究兴趣与您的方向高度契合，值得考虑。", budget);
+    }
 
-                // Clean up the response
-                reason = reason.trim();
-                if (reason.startsWith("\"") && reason.endsWith("\"")) {
-                    reason = reason.substring(1, reason.length() - 1);
-                }
+    /**
+     * 并行生成推荐理由
+     * 同时进行的 LLM 调用不超过 reasonsMaxParallel 个，一个完成后再发起下一个；
+     * 所有调用共享同一截止时间（当前剩余预算），截止前未返回的条目逐条回退为模板理由
+     */
+    private void generateReasons(List<Map<String, Object>> recommendations,
+                                 Function<Map<String, Object>, String> promptBuilder,
+                                 String templateReason, RecommendationBudget budget) {
+        long stageStart = System.nanoTime();
+        if (recommendations.isEmpty()) {
+            return;
+        }
+        if (!budget.hasAtLeast(reasonsMinMs)) {
+            budget.degrade(RecommendationBudget.STAGE_REASONS, "template");
+            recommendations.forEach(recommendation -> recommendation.put("reason", templateReason));
+            budget.recordStage(RecommendationBudget.STAGE_REASONS, stageStart);
+            return;
+        }
 
-                recommendation.put("reason", reason);
+        long deadline = System.currentTimeMillis() + budget.remainingMs();
+        ReasonFanOut fanOut = new ReasonFanOut(recommendations, promptBuilder, deadline);
+        for (int i = 0; i < Math.min(reasonsMaxParallel, recommendations.size()); i++) {
+            fanOut.launchNext();
+        }
 
+        int missed = 0;
+        for (int i = 0; i < recommendations.size(); i++) {
+            String reason = null;
+            try {
+                reason = fanOut.results.get(i).get(Math.max(0L, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                missed++;
             } catch (Exception e) {
-                log.warn("Failed to generate recommendation reason for mentor {}", 
-                        ((Mentor) recommendation.get("mentor")).getId(), e);
-                recommendation.put("reason", "该导师的研究方向与您的兴趣高度匹配，值得考虑。");
+                log.warn("Failed to generate recommendation reason: {}", e.getMessage());
             }
+            recommendations.get(i).put("reason", reason != null && !reason.isEmpty() ? reason : templateReason);
+        }
+        // 截止后不再发起剩余调用
+        fanOut.stop();
+
+        if (missed > 0) {
+            budget.degrade(RecommendationBudget.STAGE_REASONS, "partial");
         }
+        budget.recordStage(RecommendationBudget.STAGE_REASONS, stageStart);
     }
 
     /**
-     * Generate recommendation reasons for students using LLM
-     * 使用LLM生成学生推荐理由
+     * 单次请求的理由生成状态：results[i] 为第 i 条推荐的理由
      */
-    private void generateStudentRecommendationReasons(Mentor mentor, List<Map<String, Object>> recommendations) {
-        for (Map<String, Object> recommendation : recommendations) {
-            try {
-                Student student = (Student) recommendation.get("student");
-                @SuppressWarnings("unchecked")
-                Map<String, Double> matchDetails = (Map<String, Double>) recommendation.get("matchDetails");
-
-                // Build prompt for LLM
-                String prompt = buildStudentRecommendationPrompt(mentor, student, matchDetails);
-
-                // Call LLM to generate reason
-                String reason = llmService.callLLM(prompt);
+    private class ReasonFanOut {
+        private final List<Map<String, Object>> recommendations;
+        private final Function<Map<String, Object>, String> promptBuilder;
+        private final long deadline;
+        private final List<CompletableFuture<String>> results;
+        private final AtomicInteger next = new AtomicInteger();
+
+        ReasonFanOut(List<Map<String, Object>> recommendations,
+                     Function<Map<String, Object>, String> promptBuilder, long deadline) {
+            this.recommendations = recommendations;
+            this.promptBuilder = promptBuilder;
+            this.deadline = deadline;
+            this.results = new ArrayList<>(recommendations.size());
+            for (int i = 0; i < recommendations.size(); i++) {
+                results.add(new CompletableFuture<>());
+            }
+        }
 
-                // Clean up the response
-                reason = reason.trim();
-                if (reason.startsWith("\"") && reason.endsWith("\"")) {
-                    reason = reason.substring(1, reason.length() - 1);
+        void launchNext() {
+            int index = next.getAndIncrement();
+            if (index >= recommendations.size()) {
+                return;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            CompletableFuture<String> result = results.get(index);
+            String prompt;
+            try {
+                prompt = promptBuilder.apply(recommendations.get(index));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                launchNext();
+                return;
+            }
+            llmService.callLLMAsync(prompt, remaining, LLMCallSite.REASON).whenComplete((response, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(cleanReason(response));
                 }
+                launchNext();
+            });
+        }
 
-                recommendation.put("reason", reason);
+        void stop() {
+            next.set(recommendations.size());
+        }
+    }
 
-            } catch (Exception e) {
-                log.warn("Failed to generate recommendation reason for student {}", 
-                        ((Student) recommendation.get("student")).getId(), e);
-                recommendation.put("reason", "该学生的研究兴趣与您的方向高度契合，值得考虑。");
-            }
+    private String cleanReason(String reason) {
+        if (reason == null) {
+            return null;
+        }
+        reason = reason.trim();
+        if (reason.startsWith("\"") && reason.endsWith("\"") && reason.length() > 1) {
+            reason = reason.substring(1, reason.length() - 1);
         }
+        return reason;
     }
 
     /**
@@ -435,12 +560,12 @@ public class EnhancedRecommendationService {
      * Cache recommendations in Redis
      * 在Redis中缓存推荐结果
      */
-    private void cacheRecommendations(String cacheKey, List<Map<String, Object>> recommendations) {
+    private void cacheRecommendations(String cacheKey, List<Map<String, Object>> recommendations, long ttlSeconds) {
         if (redisTemplate == null) {
             return;
         }
         try {
-            redisTemplate.opsForValue().set(cacheKey, recommendations, cacheTtl, TimeUnit.SECONDS);
+            redisTemplate.opsForValue().set(cacheKey, recommendations, ttlSeconds, TimeUnit.SECONDS);
         } catch (Exception e) {
             log.warn("Failed to cache recommendations: {}", cacheKey, e);
         }
@@ -0,0 +1,32 @@
+package com.mentor.service;
+
+/**
+ * LLM Call Site
+ * LLM 调用来源，用于区分响应缓存的有效期、限流配额与统计口径
+ *
+ * UNCACHED 表示结果不可复用（例如依赖随机性或实时数据的调用），不读写缓存。
+ * priority 越小越优先：限流排队时交互式的重排序先于后台偏好分析获得配额。
+ */
+public enum LLMCallSite {
+
+    RERANK("rerank", 0),
+    REASON("reason", 1),
+    PREFERENCE_ANALYSIS("preference", 2),
+    UNCACHED("uncached", 1);
+
+    private final String key;
+    private final int priority;
+
+    LLMCallSite(String key, int priority) {
+        this.key = key;
+        this.priority = priority;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,185 @@
+package com.mentor.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LLM Rate Limiter
+ * LLM 调用限流：全局令牌桶 + 按调用来源的令牌桶，配额不足时按优先级排队
+ *
+ * 排队的调用按（来源优先级, 到达顺序）排序；轮到取令牌的是队列中
+ * 第一个所属来源桶仍有令牌的调用，因此某个来源配额耗尽不会阻塞其他来源。
+ * 等待超过调用方给出的期限时以 RejectedExecutionException 失败。
+ */
+@Component
+public class LLMRateLimiter {
+
+    @Value("${llm.rate-limit.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${llm.rate-limit.global-qps:10}")
+    private Double globalQps;
+
+    @Value("${llm.rate-limit.burst:20}")
+    private Integer burst;
+
+    @Value("${llm.rate-limit.site-qps.rerank:8}")
+    private Double rerankQps;
+
+    @Value("${llm.rate-limit.site-qps.reason:6}")
+    private Double reasonQps;
+
+    @Value("${llm.rate-limit.site-qps.preference:1}")
+    private Double preferenceQps;
+
+    // 无令牌时的最长单次等待，避免错过其他调用释放的机会
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Waiter> queue = new TreeSet<>();
+    private long sequence;
+
+    private TokenBucket global;
+    private final Map<LLMCallSite, TokenBucket> siteBuckets = new EnumMap<>(LLMCallSite.class);
+
+    @PostConstruct
+    public void init() {
+        long now = System.nanoTime();
+        global = new TokenBucket(globalQps, burst, now);
+        siteBuckets.put(LLMCallSite.RERANK, new TokenBucket(rerankQps, Math.max(1, (int) Math.ceil(rerankQps)), now));
+        siteBuckets.put(LLMCallSite.REASON, new TokenBucket(reasonQps, Math.max(1, (int) Math.ceil(reasonQps)), now));
+        siteBuckets.put(LLMCallSite.PREFERENCE_ANALYSIS,
+                new TokenBucket(preferenceQps, Math.max(1, (int) Math.ceil(preferenceQps)), now));
+    }
+
+    /**
+     * 获取一次调用配额，最多等待 maxWaitMs；返回实际排队等待的毫秒数
+     */
+    public long acquire(LLMCallSite site, long maxWaitMs) throws InterruptedException {
+        if (!enabled) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+        TokenBucket siteBucket = siteBuckets.get(site);
+
+        lock.lock();
+        Waiter waiter = new Waiter(site.getPriority(), sequence++, siteBucket);
+        queue.add(waiter);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                global.refill(now);
+                for (TokenBucket bucket : siteBuckets.values()) {
+                    bucket.refill(now);
+                }
+
+                Waiter next = eligible();
+                if (next == waiter && global.tokens >= 1) {
+                    global.tokens -= 1;
+                    if (siteBucket != null) {
+                        siteBucket.tokens -= 1;
+                    }
+                    return TimeUnit.NANOSECONDS.toMillis(now - start);
+                }
+                if (next != null && global.tokens >= 1) {
+                    // 令牌可用但轮不到当前调用：唤醒排在前面的调用
+                    changed.signalAll();
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    throw new RejectedExecutionException("LLM rate limit wait exceeded for " + site.getKey());
+                }
+                changed.awaitNanos(Math.min(remaining, Math.min(MAX_PARK_NANOS, global.nanosUntilToken())));
+            }
+        } finally {
+            queue.remove(waiter);
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前排队数
+     */
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列中第一个所属来源桶仍有令牌的调用
+     */
+    private Waiter eligible() {
+        for (Waiter candidate : queue) {
+            if (candidate.siteBucket == null || candidate.siteBucket.tokens >= 1) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        final int priority;
+        final long seq;
+        final TokenBucket siteBucket;
+
+        Waiter(int priority, long seq, TokenBucket siteBucket) {
+            this.priority = priority;
+            this.seq = seq;
+            this.siteBucket = siteBucket;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * 令牌桶（由外层锁保护）
+     */
+    private static final class TokenBucket {
+        final double ratePerNano;
+        final double capacity;
+        double tokens;
+        long lastRefill;
+
+        TokenBucket(double ratePerSecond, int capacity, long now) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+        }
+
+        long nanosUntilToken() {
+            if (tokens >= 1 || ratePerNano <= 0) {
+                return MAX_PARK_NANOS;
+            }
+            return Math.max(1L, (long) Math.ceil((1 - tokens) / ratePerNano));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.mentor.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM Response Cache
+ * LLM 提示词/响应两级缓存：进程内 LRU（L1）+ Redis（L2）
+ *
+ * 缓存键由模型、温度与规范化后的提示词（去除首尾空白、合并连续空白）的 SHA-256 组成；
+ * 有效期按调用来源配置，TTL 为 0 的来源不缓存。
+ * L2 命中时回填 L1，并沿用 L2 写入时的过期时间，避免 L1 延长有效期。
+ */
+@Slf4j
+@Component
+public class LLMResponseCache {
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${llm.cache.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${llm.cache.l1-size:512}")
+    private Integer l1Size;
+
+    @Value("${llm.cache.ttl.rerank:600}")
+    private Long rerankTtl;
+
+    @Value("${llm.cache.ttl.reason:86400}")
+    private Long reasonTtl;
+
+    @Value("${llm.cache.ttl.preference:3600}")
+    private Long preferenceTtl;
+
+    private static final String CACHE_PREFIX = "llm:cache:";
+
+    private final Map<String, Entry> l1 = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > l1Size;
+        }
+    };
+
+    private final Map<LLMCallSite, SiteStats> stats = new EnumMap<>(LLMCallSite.class);
+
+    public LLMResponseCache() {
+        for (LLMCallSite site : LLMCallSite.values()) {
+            stats.put(site, new SiteStats());
+        }
+    }
+
+    /**
+     * 该来源是否启用缓存
+     */
+    public boolean isCacheable(LLMCallSite site) {
+        return enabled && ttlSeconds(site) > 0;
+    }
+
+    /**
+     * 构建缓存键
+     */
+    public String key(String model, Double temperature, String prompt) {
+        String normalized = prompt == null ? "" : prompt.trim().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((model + "|" + temperature + "|" + normalized).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(CACHE_PREFIX);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 读取缓存，未命中返回 null
+     */
+    public String get(LLMCallSite site, String key) {
+        SiteStats siteStats = stats.get(site);
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (l1) {
+            entry = l1.get(key);
+            if (entry != null && entry.expiresAt <= now) {
+                l1.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            siteStats.l1Hits.increment();
+            siteStats.savedTokens.add(entry.tokens);
+            return entry.content;
+        }
+
+        entry = readL2(key);
+        if (entry != null && entry.expiresAt > now) {
+            synchronized (l1) {
+                l1.put(key, entry);
+            }
+            siteStats.l2Hits.increment();
+            siteStats.savedTokens.add(entry.tokens);
+            return entry.content;
+        }
+
+        siteStats.misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存；tokens 为本次调用消耗的 token 数（用于统计命中节省量）
+     */
+    public void put(LLMCallSite site, String key, String content, long tokens) {
+        if (content == null || content.trim().isEmpty()) {
+            return;
+        }
+        long ttl = ttlSeconds(site);
+        Entry entry = new Entry(content, tokens, System.currentTimeMillis() + ttl * 1000);
+        synchronized (l1) {
+            l1.put(key, entry);
+        }
+        if (redisTemplate == null) return;
+        try {
+            Map<String, Object> value = new HashMap<>();
+            value.put("content", content);
+            value.put("tokens", tokens);
+            value.put("expiresAt", entry.expiresAt);
+            redisTemplate.opsForValue().set(key, value, ttl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("LLM cache write failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * token 数估算（响应未返回 usage 时使用）：按平均 2 个字符一个 token 粗略估计
+     */
+    public static long estimateTokens(String prompt, String content) {
+        long chars = (prompt == null ? 0 : prompt.length()) + (content == null ? 0 : content.length());
+        return (chars + 1) / 2;
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long hits = 0;
+        long misses = 0;
+        long savedTokens = 0;
+        Map<String, Object> sites = new LinkedHashMap<>();
+        for (Map.Entry<LLMCallSite, SiteStats> entry : stats.entrySet()) {
+            SiteStats siteStats = entry.getValue();
+            long siteHits = siteStats.l1Hits.sum() + siteStats.l2Hits.sum();
+            long siteMisses = siteStats.misses.sum();
+            if (siteHits + siteMisses == 0) continue;
+
+            Map<String, Object> site = new LinkedHashMap<>();
+            site.put("l1Hits", siteStats.l1Hits.sum());
+            site.put("l2Hits", siteStats.l2Hits.sum());
+            site.put("misses", siteMisses);
+            site.put("hitRate", (double) siteHits / (siteHits + siteMisses));
+            site.put("savedTokens", siteStats.savedTokens.sum());
+            site.put("ttlSeconds", ttlSeconds(entry.getKey()));
+            sites.put(entry.getKey().getKey(), site);
+
+            hits += siteHits;
+            misses += siteMisses;
+            savedTokens += siteStats.savedTokens.sum();
+        }
+        result.put("enabled", enabled);
+        synchronized (l1) {
+            result.put("l1Size", l1.size());
+        }
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        result.put("savedTokens", savedTokens);
+        result.put("sites", sites);
+        return result;
+    }
+
+    private long ttlSeconds(LLMCallSite site) {
+        switch (site) {
+            case RERANK:
+                return rerankTtl;
+            case REASON:
+                return reasonTtl;
+            case PREFERENCE_ANALYSIS:
+                return preferenceTtl;
+            default:
+                return 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry readL2(String key) {
+        if (redisTemplate == null) return null;
+        try {
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof Map) {
+                Map<String, Object> value = (Map<String, Object>) cached;
+                Object content = value.get("content");
+                Object tokens = value.get("tokens");
+                Object expiresAt = value.get("expiresAt");
+                if (content instanceof String && expiresAt instanceof Number) {
+                    return new Entry((String) content,
+                            tokens instanceof Number ? ((Number) tokens).longValue() : 0L,
+                            ((Number) expiresAt).longValue());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("LLM cache read failed: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        final String content;
+        final long tokens;
+        final long expiresAt;
+
+        Entry(String content, long tokens, long expiresAt) {
+            this.content = content;
+            this.tokens = tokens;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class SiteStats {
+        final LongAdder l1Hits = new LongAdder();
+        final LongAdder l2Hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder savedTokens = new LongAdder();
+    }
+}
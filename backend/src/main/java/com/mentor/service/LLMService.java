@@ -2,25 +2,56 @@ package com.mentor.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * LLM Service
  * LLM服务（使用OpenRouter API调用DeepSeek）
+ *
+ * 所有调用共享一个带连接池的 HttpClient，并强制连接/读取超时；
+ * 同时在途的调用数由信号量隔离（bulkhead），超出时快速失败而不是排队占用请求线程；
+ * 异步调用在独立线程池中执行，返回 CompletableFuture。
+ * 指定调用来源（LLMCallSite）的调用先查询两级响应缓存，未命中时才请求 LLM；
+ * 实际请求前经过按来源限流的优先级队列，并按来源统计 token 消耗。
  */
+@Slf4j
 @Service
 public class LLMService {
 
+    @Autowired
+    private LLMResponseCache responseCache;
+
+    @Autowired
+    private LLMRateLimiter rateLimiter;
+
+    @Autowired
+    private LLMUsageMeter usageMeter;
+
     @Value("${llm.openrouter.api-key}")
     private String apiKey;
 
@@ -36,44 +67,363 @@ public class LLMService {
     @Value("${llm.openrouter.max-tokens}")
     private Integer maxTokens;
 
+    @Value("${llm.openrouter.timeout:30000}")
+    private Integer timeout;
+
+    @Value("${llm.openrouter.connect-timeout:5000}")
+    private Integer connectTimeout;
+
+    @Value("${llm.openrouter.max-concurrent:16}")
+    private Integer maxConcurrent;
+
+    @Value("${llm.openrouter.acquire-timeout-ms:200}")
+    private Long acquireTimeoutMs;
+
+    @Value("${llm.openrouter.async-queue-capacity:200}")
+    private Integer asyncQueueCapacity;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private CloseableHttpClient httpClient;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private Semaphore bulkhead;
+    private ThreadPoolExecutor asyncExecutor;
+    private ScheduledExecutorService timeoutScheduler;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConcurrent);
+        connectionManager.setDefaultMaxPerRoute(maxConcurrent);
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(timeout))
+                .evictExpiredConnections()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+
+        bulkhead = new Semaphore(maxConcurrent);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        asyncExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(asyncQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "llm-call-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        asyncExecutor.shutdownNow();
+        timeoutScheduler.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (Exception e) {
+            log.warn("Failed to close LLM http client", e);
+        }
+    }
+
     /**
      * Call LLM API
-     * 调用LLM API
+     * 调用LLM API（使用配置的超时）
      */
     public String callLLM(String prompt) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost(baseUrl);
-
-            // Set headers
-            request.setHeader("Content-Type", "application/json");
-            request.setHeader("Authorization", "Bearer " + apiKey);
-
-            // Build request body
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("temperature", temperature);
-            requestBody.put("max_tokens", maxTokens);
-
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            requestBody.put("messages", new Map[]{message});
-
-            String jsonBody = objectMapper.writeValueAsString(requestBody);
-            request.setEntity(new StringEntity(jsonBody, "UTF-8"));
-
-            // Execute request
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                String responseBody = EntityUtils.toString(response.getEntity());
-                JsonNode jsonResponse = objectMapper.readTree(responseBody);
-
-                // Extract response content
-                return jsonResponse.path("choices").get(0)
-                        .path("message").path("content").asText();
+        return callLLM(prompt, timeout);
+    }
+
+    /**
+     * Call LLM API within a time budget
+     * 在给定时间内调用LLM API（用于推荐请求的时间预算）
+     */
+    public String callLLM(String prompt, long timeoutMs) throws Exception {
+        return callLLM(prompt, timeoutMs, LLMCallSite.UNCACHED);
+    }
+
+    /**
+     * Call LLM API with response caching
+     * 按调用来源读写响应缓存的LLM调用
+     */
+    public String callLLM(String prompt, long timeoutMs, LLMCallSite site) throws Exception {
+        String cacheKey = cacheKey(prompt, site);
+        if (cacheKey != null) {
+            String cached = responseCache.get(site, cacheKey);
+            if (cached != null) {
+                return cached;
             }
         }
+        Completion completion = executeWithBulkhead(new HttpPost(baseUrl), prompt, timeoutMs, site, null);
+        cacheCompletion(site, cacheKey, prompt, completion);
+        return completion.content;
+    }
+
+    /**
+     * Call LLM API in streaming mode
+     * 以流式模式（stream=true）调用LLM API，每收到一段增量文本即回调 onDelta，返回完整文本
+     */
+    public String streamLLM(String prompt, long timeoutMs, Consumer<String> onDelta) throws Exception {
+        return executeWithBulkhead(new HttpPost(baseUrl), prompt, timeoutMs, LLMCallSite.UNCACHED, onDelta).content;
+    }
+
+    /**
+     * Call LLM API asynchronously
+     * 异步调用LLM API，不占用调用方线程
+     */
+    public CompletableFuture<String> callLLMAsync(String prompt) {
+        return callLLMAsync(prompt, timeout);
+    }
+
+    /**
+     * Call LLM API asynchronously with a deadline
+     * 异步调用LLM API，超过 timeoutMs 时以 TimeoutException 结束并中止底层请求
+     */
+    public CompletableFuture<String> callLLMAsync(String prompt, long timeoutMs) {
+        return submitAsync(prompt, timeoutMs, LLMCallSite.UNCACHED, null);
+    }
+
+    /**
+     * Call LLM API asynchronously with response caching
+     * 按调用来源读写响应缓存的异步调用，命中时直接返回已完成的 future
+     */
+    public CompletableFuture<String> callLLMAsync(String prompt, long timeoutMs, LLMCallSite site) {
+        return submitAsync(prompt, timeoutMs, site, null);
+    }
+
+    /**
+     * Call LLM API asynchronously in streaming mode
+     * 异步流式调用LLM API，增量文本在 LLM 线程池中回调 onDelta
+     */
+    public CompletableFuture<String> streamLLMAsync(String prompt, long timeoutMs, Consumer<String> onDelta) {
+        return submitAsync(prompt, timeoutMs, LLMCallSite.UNCACHED, onDelta);
+    }
+
+    /**
+     * Call LLM API asynchronously in streaming mode with response caching
+     * 带缓存的异步流式调用，命中时以一段完整文本回调 onDelta
+     */
+    public CompletableFuture<String> streamLLMAsync(String prompt, long timeoutMs, LLMCallSite site,
+                                                    Consumer<String> onDelta) {
+        return submitAsync(prompt, timeoutMs, site, onDelta);
+    }
+
+    private CompletableFuture<String> submitAsync(String prompt, long timeoutMs, LLMCallSite site,
+                                                  Consumer<String> onDelta) {
+        String cacheKey = cacheKey(prompt, site);
+        if (cacheKey != null) {
+            String cached = responseCache.get(site, cacheKey);
+            if (cached != null) {
+                CompletableFuture<String> hit = new CompletableFuture<>();
+                try {
+                    if (onDelta != null) {
+                        onDelta.accept(cached);
+                    }
+                    hit.complete(cached);
+                } catch (Throwable e) {
+                    hit.completeExceptionally(e);
+                }
+                return hit;
+            }
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        HttpPost request = new HttpPost(baseUrl);
+        try {
+            asyncExecutor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    Completion completion = executeWithBulkhead(request, prompt, timeoutMs, site, onDelta);
+                    cacheCompletion(site, cacheKey, prompt, completion);
+                    future.complete(completion.content);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException("LLM async queue is full"));
+            return future;
+        }
+
+        ScheduledFuture<?> deadline = timeoutScheduler.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("LLM call timed out after " + timeoutMs + "ms"))) {
+                timeouts.increment();
+                request.abort();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> deadline.cancel(false));
+        return future;
+    }
+
+    /**
+     * 获取调用统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("calls", calls.sum());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("asyncQueued", asyncExecutor.getQueue().size());
+        stats.put("rejected", rejected.sum());
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("rateLimitQueued", rateLimiter.queued());
+        stats.put("sites", usageMeter.getStats());
+        stats.put("cache", responseCache.getStats());
+        return stats;
+    }
+
+    private String cacheKey(String prompt, LLMCallSite site) {
+        return responseCache.isCacheable(site) ? responseCache.key(model, temperature, prompt) : null;
+    }
+
+    private void cacheCompletion(LLMCallSite site, String cacheKey, String prompt, Completion completion) {
+        if (cacheKey == null) {
+            return;
+        }
+        long tokens = completion.totalTokens > 0
+                ? completion.totalTokens
+                : LLMResponseCache.estimateTokens(prompt, completion.content);
+        responseCache.put(site, cacheKey, completion.content, tokens);
+    }
+
+    /**
+     * 先在限流队列中取得配额（排队时间计入 timeoutMs），再在信号量隔离内执行；拿不到许可时快速失败
+     */
+    private Completion executeWithBulkhead(HttpPost request, String prompt, long timeoutMs,
+                                           LLMCallSite site, Consumer<String> onDelta) throws Exception {
+        long waited;
+        try {
+            waited = rateLimiter.acquire(site, timeoutMs);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            usageMeter.recordRejected(site);
+            throw e;
+        }
+        usageMeter.recordCall(site, waited);
+        long remainingMs = timeoutMs - waited;
+        if (remainingMs <= 0) {
+            timeouts.increment();
+            throw new TimeoutException("LLM call timed out while waiting for rate limit");
+        }
+
+        if (!bulkhead.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many concurrent LLM calls");
+        }
+        try {
+            calls.increment();
+            int effectiveTimeout = (int) Math.max(1L, Math.min(remainingMs, timeout));
+            request.setConfig(requestConfig(effectiveTimeout));
+            Completion completion = execute(request, prompt, onDelta);
+            usageMeter.recordTokens(site, completion.promptTokens, completion.completionTokens);
+            return completion;
+        } catch (Exception e) {
+            failures.increment();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private RequestConfig requestConfig(int timeoutMs) {
+        return RequestConfig.custom()
+                .setConnectTimeout(Math.min(connectTimeout, timeoutMs))
+                .setConnectionRequestTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
+                .build();
+    }
+
+    private Completion execute(HttpPost request, String prompt, Consumer<String> onDelta) throws Exception {
+        // Set headers
+        request.setHeader("Content-Type", "application/json");
+        request.setHeader("Authorization", "Bearer " + apiKey);
+
+        // Build request body
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_tokens", maxTokens);
+        if (onDelta != null) {
+            requestBody.put("stream", true);
+            // 要求在最后一个分片中返回 usage，用于 token 统计
+            requestBody.put("stream_options", Collections.singletonMap("include_usage", true));
+        }
+
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        requestBody.put("messages", new Map[]{message});
+
+        String jsonBody = objectMapper.writeValueAsString(requestBody);
+        request.setEntity(new StringEntity(jsonBody, "UTF-8"));
+
+        // Execute request
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != 200) {
+                String responseBody = EntityUtils.toString(response.getEntity(), "UTF-8");
+                throw new RuntimeException("LLM API returned status " + statusCode + ": " + responseBody);
+            }
+            if (onDelta != null) {
+                return readStream(response, onDelta);
+            }
+            String responseBody = EntityUtils.toString(response.getEntity(), "UTF-8");
+            JsonNode jsonResponse = objectMapper.readTree(responseBody);
+
+            // Extract response content
+            return new Completion(
+                    jsonResponse.path("choices").path(0).path("message").path("content").asText(),
+                    jsonResponse.path("usage"));
+        }
+    }
+
+    /**
+     * 读取 SSE 格式的流式响应（data: {...} 行，以 data: [DONE] 结束）
+     */
+    private Completion readStream(CloseableHttpResponse response, Consumer<String> onDelta) throws Exception {
+        StringBuilder content = new StringBuilder();
+        JsonNode usage = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String payload = line.substring(5).trim();
+                if ("[DONE]".equals(payload)) {
+                    break;
+                }
+                if (payload.isEmpty()) {
+                    continue;
+                }
+                JsonNode chunk = objectMapper.readTree(payload);
+                if (chunk.hasNonNull("usage")) {
+                    usage = chunk.get("usage");
+                }
+                String delta = chunk.path("choices").path(0).path("delta").path("content").asText("");
+                if (!delta.isEmpty()) {
+                    content.append(delta);
+                    onDelta.accept(delta);
+                }
+            }
+        }
+        return new Completion(content.toString(), usage);
     }
 
     /**
@@ -92,6 +442,24 @@ public class LLMService {
                 historyData
         );
 
-        return callLLM(prompt);
+        return callLLM(prompt, timeout, LLMCallSite.PREFERENCE_ANALYSIS);
+    }
+
+    /**
+     * 单次调用结果：响应文本与消耗的 token 数（响应未返回 usage 时为 0）
+     */
+    private static final class Completion {
+        final String content;
+        final long promptTokens;
+        final long completionTokens;
+        final long totalTokens;
+
+        Completion(String content, JsonNode usage) {
+            this.content = content;
+            this.promptTokens = usage == null ? 0L : usage.path("prompt_tokens").asLong(0L);
+            this.completionTokens = usage == null ? 0L : usage.path("completion_tokens").asLong(0L);
+            long total = usage == null ? 0L : usage.path("total_tokens").asLong(0L);
+            this.totalTokens = total > 0 ? total : promptTokens + completionTokens;
+        }
     }
 }
@@ -0,0 +1,112 @@
+package com.mentor.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM Usage Meter
+ * 按调用来源统计 LLM 调用量、token 消耗与限流排队耗时
+ *
+ * token 数取自响应中的 usage 字段（prompt_tokens / completion_tokens）；
+ * QPS 为最近 60 秒的平均值，按秒分桶计数。
+ */
+@Component
+public class LLMUsageMeter {
+
+    private static final int WINDOW_SECONDS = 60;
+
+    private final Map<LLMCallSite, SiteUsage> usage = new EnumMap<>(LLMCallSite.class);
+
+    public LLMUsageMeter() {
+        for (LLMCallSite site : LLMCallSite.values()) {
+            usage.put(site, new SiteUsage());
+        }
+    }
+
+    /**
+     * 记录一次获得配额的调用及其排队耗时
+     */
+    public void recordCall(LLMCallSite site, long queueWaitMs) {
+        SiteUsage siteUsage = usage.get(site);
+        siteUsage.calls.increment();
+        siteUsage.queueWaitMs.add(queueWaitMs);
+        siteUsage.maxQueueWaitMs.accumulateAndGet(queueWaitMs, Math::max);
+        siteUsage.tick(System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * 记录排队超时被拒绝的调用
+     */
+    public void recordRejected(LLMCallSite site) {
+        usage.get(site).rejected.increment();
+    }
+
+    /**
+     * 记录一次调用的 token 消耗
+     */
+    public void recordTokens(LLMCallSite site, long promptTokens, long completionTokens) {
+        SiteUsage siteUsage = usage.get(site);
+        siteUsage.promptTokens.add(promptTokens);
+        siteUsage.completionTokens.add(completionTokens);
+    }
+
+    /**
+     * 获取各来源的统计
+     */
+    public Map<String, Object> getStats() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<LLMCallSite, SiteUsage> entry : usage.entrySet()) {
+            SiteUsage siteUsage = entry.getValue();
+            long calls = siteUsage.calls.sum();
+            if (calls == 0 && siteUsage.rejected.sum() == 0) continue;
+
+            Map<String, Object> site = new LinkedHashMap<>();
+            site.put("calls", calls);
+            site.put("rejected", siteUsage.rejected.sum());
+            site.put("qps", (double) siteUsage.windowCount(nowSecond) / WINDOW_SECONDS);
+            site.put("promptTokens", siteUsage.promptTokens.sum());
+            site.put("completionTokens", siteUsage.completionTokens.sum());
+            site.put("avgQueueWaitMs", calls == 0 ? 0.0 : (double) siteUsage.queueWaitMs.sum() / calls);
+            site.put("maxQueueWaitMs", siteUsage.maxQueueWaitMs.get());
+            result.put(entry.getKey().getKey(), site);
+        }
+        return result;
+    }
+
+    private static final class SiteUsage {
+        final LongAdder calls = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder queueWaitMs = new LongAdder();
+        final AtomicLong maxQueueWaitMs = new AtomicLong();
+        final AtomicLongArray slotSecond = new AtomicLongArray(WINDOW_SECONDS);
+        final AtomicLongArray slotCount = new AtomicLongArray(WINDOW_SECONDS);
+
+        void tick(long second) {
+            int slot = (int) (second % WINDOW_SECONDS);
+            long stamped = slotSecond.get(slot);
+            if (stamped != second && slotSecond.compareAndSet(slot, stamped, second)) {
+                slotCount.set(slot, 0);
+            }
+            slotCount.incrementAndGet(slot);
+        }
+
+        long windowCount(long nowSecond) {
+            long total = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (nowSecond - slotSecond.get(i) < WINDOW_SECONDS) {
+                    total += slotCount.get(i);
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package com.mentor.service;
+
+import com.mentor.entity.Mentor;
+import com.mentor.entity.Student;
+import com.mentor.mapper.MentorMapper;
+import com.mentor.mapper.StudentMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Global Matching Service
+ * 全局匹配服务：在导师名额约束下为所有学生计算稳定匹配，作为“建议匹配”推荐来源
+ *
+ * 学生偏好 = RecommendationScorer 学生找导师得分，导师偏好 = 导师找学生得分；
+ * 每位学生只保留向量相似度下得分最高的若干位导师作为候选，候选列表以原始类型数组交给 StableMatchingEngine
+ * 结果写入 Redis 供所有实例读取；本实例内存中的结果只在 Redis 不可用时兜底，避免读到本节点较旧的一次匹配。
+ * 每次匹配写入带版本号的一组键（学生、导师、统计），写完后切换 matching:suggested:current 指针，
+ * 读取方先取指针再读同一版本的键，不会混用两次匹配的结果；旧版本的键设置过期时间后自然删除。
+ */
+@Slf4j
+@Service
+public class MatchingService {
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private RecommendationScorer scorer;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${matching.candidates-per-student:50}")
+    private Integer candidatesPerStudent;
+
+    @Value("${matching.parallelism:0}")
+    private Integer parallelism;
+
+    @Value("${matching.page-size:1000}")
+    private Integer pageSize;
+
+    @Value("${matching.scheduled-enabled:false}")
+    private Boolean scheduledEnabled;
+
+    private static final String REDIS_KEY_PREFIX = "matching:suggested:";
+    private static final String REDIS_KEY_CURRENT = "matching:suggested:current";
+    private static final long OLD_VERSION_TTL_SECONDS = 300;
+    private static final int REDIS_BATCH_SIZE = 1000;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Run matching in background
+     * 后台执行全局匹配
+     */
+    @Async
+    public void runMatchingAsync() {
+        runMatching();
+    }
+
+    /**
+     * Scheduled matching (disabled by default)
+     * 定时执行全局匹配（默认关闭）
+     */
+    @Scheduled(cron = "${matching.cron:0 0 3 * * ?}")
+    public void scheduledMatching() {
+        if (scheduledEnabled) {
+            runMatching();
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Run global stable matching
+     * 执行全局稳定匹配，同一时间只允许一个匹配任务
+     */
+    public Map<String, Object> runMatching() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Matching is already running, skip");
+            return getSummary();
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+
+            // 1. 加载导师（仅保留有剩余名额的）与学生
+            List<Mentor> mentors = new ArrayList<>();
+            for (Mentor mentor : loadAllMentors()) {
+                if (remainingCapacity(mentor) > 0) {
+                    mentors.add(mentor);
+                }
+            }
+            List<Student> students = loadAllStudents();
+            if (mentors.isEmpty() || students.isEmpty()) {
+                log.info("No mentors with capacity or no students, skip matching");
+                return getSummary();
+            }
+
+            // 2. 导师向量矩阵与导师侧静态得分
+            int mentorCount = mentors.size();
+            int[] capacity = new int[mentorCount];
+            double[] mentorStatic = new double[mentorCount];
+            float[][] mentorVectors = new float[mentorCount][];
+            for (int from = 0; from < mentorCount; from += pageSize) {
+                int end = Math.min(mentorCount, from + pageSize);
+                // 按页一次 MGET 读取已缓存的向量，未缓存的再单独生成
+                List<List<Float>> cached = embeddingService.getCachedMentorEmbeddings(mentors.subList(from, end));
+                for (int m = from; m < end; m++) {
+                    Mentor mentor = mentors.get(m);
+                    capacity[m] = remainingCapacity(mentor);
+                    mentorStatic[m] = scorer.mentorStaticScore(mentor);
+                    mentorVectors[m] = normalizedEmbedding(mentor, cached.get(m - from));
+                }
+            }
+            long loadTime = System.currentTimeMillis();
+
+            // 3. 为每位学生生成候选导师列表：按页批量读取学生向量，用后即弃，不常驻内存
+            int studentCount = students.size();
+            int[][] studentPrefs = new int[studentCount][];
+            float[][] studentScores = new float[studentCount][];
+            float[][] mentorScores = new float[studentCount][];
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int from = 0; from < studentCount; from += pageSize) {
+                    int start = from;
+                    int end = Math.min(studentCount, from + pageSize);
+                    List<List<Float>> cached = embeddingService.getCachedStudentEmbeddings(students.subList(start, end));
+                    pool.submit(() -> IntStream.range(start, end).parallel().forEach(s ->
+                            buildCandidates(s, students.get(s), cached.get(s - start), mentors, mentorVectors,
+                                    mentorStatic, studentPrefs, studentScores, mentorScores))).get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+            long candidateTime = System.currentTimeMillis();
+
+            // 4. 稳定匹配
+            StableMatchingEngine.Result result = StableMatchingEngine.match(mentorCount, capacity, studentPrefs, mentorScores);
+            long matchTime = System.currentTimeMillis();
+
+            // 5. 保存结果
+            Map<Integer, Map<String, Object>> byStudent = new HashMap<>();
+            Map<Integer, List<Integer>> byMentor = new HashMap<>();
+            int[] studentMentor = result.getStudentMentor();
+            int[] studentRank = result.getStudentRank();
+            for (int s = 0; s < studentCount; s++) {
+                int m = studentMentor[s];
+                if (m == StableMatchingEngine.UNMATCHED) {
+                    continue;
+                }
+                Integer studentId = students.get(s).getId();
+                Integer mentorId = mentors.get(m).getId();
+                Map<String, Object> match = new HashMap<>();
+                match.put("studentId", studentId);
+                match.put("mentorId", mentorId);
+                match.put("studentScore", (double) studentScores[s][studentRank[s]]);
+                match.put("mentorScore", (double) result.getMentorScore()[s]);
+                match.put("preferenceRank", studentRank[s] + 1);
+                byStudent.put(studentId, match);
+                byMentor.computeIfAbsent(mentorId, k -> new ArrayList<>()).add(studentId);
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("students", studentCount);
+            summary.put("mentors", mentorCount);
+            summary.put("matched", result.getMatched());
+            summary.put("rounds", result.getRounds());
+            summary.put("proposals", result.getProposals());
+            summary.put("loadMs", loadTime - startTime);
+            summary.put("candidateMs", candidateTime - loadTime);
+            summary.put("matchMs", matchTime - candidateTime);
+            summary.put("finishedAt", new Date());
+
+            snapshot = new Snapshot(byStudent, byMentor, summary);
+            saveToRedis(snapshot);
+
+            log.info("Stable matching finished: {}", summary);
+            return summary;
+
+        } catch (Exception e) {
+            log.error("Stable matching failed", e);
+            throw new RuntimeException("Stable matching failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Get suggested mentor for student
+     * 获取学生的建议匹配导师
+     */
+    public Map<String, Object> getSuggestedMentor(Integer studentId) {
+        Map<String, Object> match = findMatch(currentVersion(), studentId);
+        if (match == null) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>(match);
+        result.put("mentor", mentorMapper.getMentorById(((Number) match.get("mentorId")).intValue()));
+        result.put("source", "stable_matching");
+        return result;
+    }
+
+    /**
+     * Get suggested students for mentor
+     * 获取导师的建议匹配学生
+     */
+    public List<Map<String, Object>> getSuggestedStudents(Integer mentorId) {
+        List<Integer> studentIds = null;
+        boolean fromRedis = false;
+        String version = currentVersion();
+        if (version != null) {
+            try {
+                Object cached = redisTemplate.opsForHash().get(mentorKey(version), String.valueOf(mentorId));
+                if (cached instanceof List) {
+                    studentIds = new ArrayList<>();
+                    for (Object id : (List<?>) cached) {
+                        studentIds.add(((Number) id).intValue());
+                    }
+                }
+                fromRedis = true;
+            } catch (Exception e) {
+                log.warn("Failed to read suggested students from Redis: {}", mentorId, e);
+            }
+        }
+        Snapshot current = snapshot;
+        if (!fromRedis && current != null) {
+            studentIds = current.byMentor.get(mentorId);
+        }
+        if (studentIds == null) {
+            return Collections.emptyList();
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Integer studentId : studentIds) {
+            Map<String, Object> item = new HashMap<>();
+            Map<String, Object> match = findMatch(version, studentId);
+            if (match != null) {
+                item.putAll(match);
+            }
+            item.put("student", studentMapper.getStudentById(studentId));
+            item.put("source", "stable_matching");
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 读取 Redis 中最新一次匹配的版本号，Redis 不可用或尚无结果时返回 null
+     */
+    private String currentVersion() {
+        if (redisTemplate == null) {
+            return null;
+        }
+        try {
+            Object version = redisTemplate.opsForValue().get(REDIS_KEY_CURRENT);
+            return version != null ? String.valueOf(version) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read matching version from Redis", e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取指定版本的匹配结果，Redis 不可用时回退到本实例内存中的结果
+     */
+    private Map<String, Object> findMatch(String version, Integer studentId) {
+        if (version != null) {
+            try {
+                return castMap(redisTemplate.opsForHash().get(studentKey(version), String.valueOf(studentId)));
+            } catch (Exception e) {
+                log.warn("Failed to read suggested match from Redis: {}", studentId, e);
+            }
+        }
+        Snapshot current = snapshot;
+        return current != null ? current.byStudent.get(studentId) : null;
+    }
+
+    /**
+     * Get last matching summary
+     * 获取最近一次匹配的统计信息
+     */
+    public Map<String, Object> getSummary() {
+        String version = currentVersion();
+        if (version != null) {
+            try {
+                Map<String, Object> cached = castMap(redisTemplate.opsForValue().get(summaryKey(version)));
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read matching summary from Redis", e);
+            }
+        }
+        Snapshot current = snapshot;
+        return current != null ? current.summary : Collections.emptyMap();
+    }
+
+    /**
+     * 计算单个学生的候选导师：按学生偏好取前 L 位，并记录导师对该学生的评分
+     */
+    private void buildCandidates(int s, Student student, List<Float> cachedVector, List<Mentor> mentors,
+                                 float[][] mentorVectors, double[] mentorStatic, int[][] studentPrefs,
+                                 float[][] studentScores, float[][] mentorScores) {
+        float[] studentVector;
+        try {
+            studentVector = normalize(cachedVector != null ? cachedVector
+                    : embeddingService.generateStudentEmbedding(student));
+        } catch (Exception e) {
+            log.warn("Skip student {} in matching: embedding unavailable", student.getId());
+            studentVector = null;
+        }
+        if (studentVector == null) {
+            studentPrefs[s] = new int[0];
+            studentScores[s] = new float[0];
+            mentorScores[s] = new float[0];
+            return;
+        }
+
+        // 固定大小的小顶堆保存当前得分最高的 L 位导师
+        int limit = Math.min(candidatesPerStudent, mentors.size());
+        int[] topMentor = new int[limit];
+        float[] topScore = new float[limit];
+        float[] topSimilarity = new float[limit];
+        int size = 0;
+        for (int m = 0; m < mentorVectors.length; m++) {
+            float[] mentorVector = mentorVectors[m];
+            if (mentorVector == null || mentorVector.length != studentVector.length) {
+                continue;
+            }
+            float similarity = dot(studentVector, mentorVector);
+            float score = (float) scorer.studentPreferenceScore(similarity, mentorStatic[m]);
+            if (size < limit) {
+                topMentor[size] = m;
+                topScore[size] = score;
+                topSimilarity[size] = similarity;
+                heapUp(topMentor, topScore, topSimilarity, size++);
+            } else if (score > topScore[0]) {
+                topMentor[0] = m;
+                topScore[0] = score;
+                topSimilarity[0] = similarity;
+                heapDown(topMentor, topScore, topSimilarity, size);
+            }
+        }
+
+        // 依次弹出堆顶得到升序，逆序写入即为偏好顺序
+        int[] prefs = new int[size];
+        float[] scores = new float[size];
+        float[] similarities = new float[size];
+        for (int i = size - 1; i >= 0; i--) {
+            prefs[i] = topMentor[0];
+            scores[i] = topScore[0];
+            similarities[i] = topSimilarity[0];
+            int last = i;
+            topMentor[0] = topMentor[last];
+            topScore[0] = topScore[last];
+            topSimilarity[0] = topSimilarity[last];
+            heapDown(topMentor, topScore, topSimilarity, last);
+        }
+
+        double studentStatic = scorer.studentStaticScore(student);
+        float[] mentorSide = new float[size];
+        for (int j = 0; j < size; j++) {
+            mentorSide[j] = (float) scorer.mentorPreferenceScore(mentors.get(prefs[j]), student,
+                    similarities[j], studentStatic);
+        }
+        studentPrefs[s] = prefs;
+        studentScores[s] = scores;
+        mentorScores[s] = mentorSide;
+    }
+
+    private static void heapUp(int[] ids, float[] scores, float[] similarities, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                break;
+            }
+            swap(ids, scores, similarities, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void heapDown(int[] ids, float[] scores, float[] similarities, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            if (left + 1 < size && scores[left + 1] < scores[left]) {
+                smallest = left + 1;
+            }
+            if (scores[index] <= scores[smallest]) {
+                break;
+            }
+            swap(ids, scores, similarities, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] ids, float[] scores, float[] similarities, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        float similarity = similarities[i];
+        similarities[i] = similarities[j];
+        similarities[j] = similarity;
+    }
+
+    private float[] normalizedEmbedding(Mentor mentor, List<Float> cachedVector) {
+        try {
+            return normalize(cachedVector != null ? cachedVector : embeddingService.generateMentorEmbedding(mentor));
+        } catch (Exception e) {
+            log.warn("Skip mentor {} in matching: embedding unavailable", mentor.getId());
+            return null;
+        }
+    }
+
+    private static float[] normalize(List<Float> embedding) {
+        if (embedding == null || embedding.isEmpty()) {
+            return null;
+        }
+        float[] vector = new float[embedding.size()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            // 从 Redis 反序列化的向量元素可能是 Double
+            Object value = embedding.get(i);
+            vector[i] = ((Number) value).floatValue();
+            norm += vector[i] * vector[i];
+        }
+        if (norm == 0) {
+            return vector;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 导师剩余名额，与 RecommendationScorer 的接收能力口径一致（未设置上限时按10人计算）
+     */
+    private static int remainingCapacity(Mentor mentor) {
+        if (mentor.getAcceptingStudents() == null || !mentor.getAcceptingStudents()) {
+            return 0;
+        }
+        int maxStudents = mentor.getMaxStudents() != null ? mentor.getMaxStudents() : 10;
+        int currentStudents = mentor.getCurrentStudents() != null ? mentor.getCurrentStudents() : 0;
+        return Math.max(0, maxStudents - currentStudents);
+    }
+
+    /**
+     * 按 ID 游标分页加载：排序键唯一且不随浏览数等字段变化，翻页时不会遗漏或重复
+     * （重复的导师会成为名额独立的两个下标，导致超额分配）
+     */
+    private List<Mentor> loadAllMentors() {
+        List<Mentor> all = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Mentor> page = mentorMapper.getMentorsAfterId(afterId, pageSize);
+            all.addAll(page);
+            if (page.size() < pageSize) {
+                return all;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private List<Student> loadAllStudents() {
+        List<Student> all = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Student> page = studentMapper.getStudentsAfterId(afterId, pageSize);
+            all.addAll(page);
+            if (page.size() < pageSize) {
+                return all;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 结果写入 Redis，供其他实例及重启后读取
+     */
+    private void saveToRedis(Snapshot result) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            // 先写完新版本的全部键，再切换指针；读取方总是看到同一次匹配的完整结果
+            String version = String.valueOf(System.currentTimeMillis());
+            writeHash(studentKey(version), result.byStudent);
+            writeHash(mentorKey(version), result.byMentor);
+            redisTemplate.opsForValue().set(summaryKey(version), result.summary);
+            Object previous = redisTemplate.opsForValue().getAndSet(REDIS_KEY_CURRENT, version);
+            if (previous != null && !version.equals(String.valueOf(previous))) {
+                // 正在读取旧版本的请求仍可读完
+                String old = String.valueOf(previous);
+                for (String key : Arrays.asList(studentKey(old), mentorKey(old), summaryKey(old))) {
+                    redisTemplate.expire(key, OLD_VERSION_TTL_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to save matching result to Redis", e);
+        }
+    }
+
+    private void writeHash(String key, Map<Integer, ?> values) {
+        Map<String, Object> batch = new HashMap<>();
+        for (Map.Entry<Integer, ?> entry : values.entrySet()) {
+            batch.put(String.valueOf(entry.getKey()), entry.getValue());
+            if (batch.size() >= REDIS_BATCH_SIZE) {
+                redisTemplate.opsForHash().putAll(key, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            redisTemplate.opsForHash().putAll(key, batch);
+        }
+    }
+
+    private static String studentKey(String version) {
+        return REDIS_KEY_PREFIX + version + ":student";
+    }
+
+    private static String mentorKey(String version) {
+        return REDIS_KEY_PREFIX + version + ":mentor";
+    }
+
+    private static String summaryKey(String version) {
+        return REDIS_KEY_PREFIX + version + ":summary";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static class Snapshot {
+        final Map<Integer, Map<String, Object>> byStudent;
+        final Map<Integer, List<Integer>> byMentor;
+        final Map<String, Object> summary;
+
+        Snapshot(Map<Integer, Map<String, Object>> byStudent, Map<Integer, List<Integer>> byMentor,
+                 Map<String, Object> summary) {
+            this.byStudent = byStudent;
+            this.byMentor = byMentor;
+            this.summary = summary;
+        }
+    }
+}
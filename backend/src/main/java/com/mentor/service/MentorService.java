@@ -3,7 +3,6 @@ package com.mentor.service;
 import com.mentor.entity.Mentor;
 import com.mentor.mapper.MentorMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +19,9 @@ public class MentorService {
     @Autowired
     private MentorMapper mentorMapper;
 
+    @Autowired
+    private CounterAggregationService counterAggregationService;
+
     /**
      * Create mentor
      * 创建导师
@@ -62,7 +64,7 @@ public class MentorService {
      * 根据ID获取导师
      */
     public Mentor getMentorById(Integer id) {
-        return mentorMapper.getMentorById(id);
+        return counterAggregationService.withPendingViews(mentorMapper.getMentorById(id));
     }
 
     /**
@@ -70,7 +72,7 @@ public class MentorService {
      * 根据用户ID获取导师
      */
     public Mentor getMentorByUserId(Integer userId) {
-        return mentorMapper.getMentorByUserId(userId);
+        return counterAggregationService.withPendingViews(mentorMapper.getMentorByUserId(userId));
     }
 
     /**
@@ -79,7 +81,7 @@ public class MentorService {
      */
     public List<Mentor> getMentorList(Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return mentorMapper.getMentorList(offset, limit);
+        return counterAggregationService.withPendingViews(mentorMapper.getMentorList(offset, limit));
     }
 
     /**
@@ -88,7 +90,7 @@ public class MentorService {
      */
     public List<Mentor> searchMentors(String keyword, Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return mentorMapper.searchMentors(keyword, offset, limit);
+        return counterAggregationService.withPendingViews(mentorMapper.searchMentors(keyword, offset, limit));
     }
 
     /**
@@ -97,7 +99,7 @@ public class MentorService {
      */
     public List<Mentor> getMentorsByInstitution(String institution, Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return mentorMapper.getMentorsByInstitution(institution, offset, limit);
+        return counterAggregationService.withPendingViews(mentorMapper.getMentorsByInstitution(institution, offset, limit));
     }
 
     /**
@@ -106,7 +108,7 @@ public class MentorService {
      */
     public List<Mentor> getMentorsByResearchArea(String researchArea, Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return mentorMapper.getMentorsByResearchArea(researchArea, offset, limit);
+        return counterAggregationService.withPendingViews(mentorMapper.getMentorsByResearchArea(researchArea, offset, limit));
     }
 
     /**
@@ -127,12 +129,10 @@ public class MentorService {
 
     /**
      * Increment view count
-     * 增加浏览次数（异步执行）
+     * 增加浏览次数（内存累加，定时批量写回）
      */
-    @Async
-    @Transactional
     public void incrementViewCount(Integer id) {
-        mentorMapper.incrementViewCount(id);
+        counterAggregationService.incrementMentorView(id);
     }
 
     /**
@@ -161,7 +161,8 @@ public class MentorService {
                                                   String title, String department, Boolean acceptingStudents,
                                                   Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return mentorMapper.getMentorListWithFilters(keyword, institution, researchArea, title, department, acceptingStudents, offset, limit);
+        return counterAggregationService.withPendingViews(
+                mentorMapper.getMentorListWithFilters(keyword, institution, researchArea, title, department, acceptingStudents, offset, limit));
     }
 
     /**
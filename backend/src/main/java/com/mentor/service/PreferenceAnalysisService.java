@@ -0,0 +1,212 @@
+package com.mentor.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mentor.entity.BrowsingHistory;
+import com.mentor.entity.Mentor;
+import com.mentor.entity.UserPreference;
+import com.mentor.mapper.BrowsingHistoryMapper;
+import com.mentor.mapper.MentorMapper;
+import com.mentor.mapper.UserPreferenceMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preference Analysis Service
+ * 用户偏好分析服务：在后台队列中执行 LLM 偏好分析，结果写入 user_preferences
+ *
+ * 用户行为记录后提交检查任务；同一用户同一时间最多只有一个排队或执行中的任务。
+ * 推荐请求只读取最近一次分析结果，不再在请求路径上调用 LLM。
+ */
+@Slf4j
+@Service
+public class PreferenceAnalysisService {
+
+    @Autowired
+    private BrowsingHistoryMapper browsingHistoryMapper;
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Autowired
+    private UserPreferenceMapper userPreferenceMapper;
+
+    @Autowired
+    private LLMService llmService;
+
+    @Value("${recommendation.min-history-count:30}")
+    private Integer minHistoryCount;
+
+    @Value("${recommendation.analysis-trigger-count:25}")
+    private Integer analysisTriggerCount;
+
+    @Value("${recommendation.analysis.threads:2}")
+    private Integer threads;
+
+    @Value("${recommendation.analysis.queue-capacity:1000}")
+    private Integer queueCapacity;
+
+    private static final int HISTORY_LIMIT = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 排队或执行中的用户，用于去重
+    private final Set<Integer> pendingUsers = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "preference-analysis-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 行为记录后调用：提交阈值检查任务，满足条件时执行分析
+     */
+    public void onBehaviorTracked(Integer userId) {
+        submit(userId, false);
+    }
+
+    /**
+     * 主动请求分析（忽略新增记录阈值）
+     */
+    public boolean requestAnalysis(Integer userId) {
+        return submit(userId, true);
+    }
+
+    public boolean isPending(Integer userId) {
+        return pendingUsers.contains(userId);
+    }
+
+    private boolean submit(Integer userId, boolean force) {
+        if (userId == null || !pendingUsers.add(userId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    analyzeIfNeeded(userId, force);
+                } catch (Exception e) {
+                    log.error("Preference analysis failed for user: {}", userId, e);
+                } finally {
+                    pendingUsers.remove(userId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingUsers.remove(userId);
+            log.warn("Preference analysis queue is full, skip user: {}", userId);
+            return false;
+        }
+    }
+
+    private void analyzeIfNeeded(Integer userId, boolean force) throws Exception {
+        // 计数由行为写入批次维护（主键查询，替代 COUNT(*)）
+        Integer eventCount = browsingHistoryMapper.getUserEventCount(userId);
+        int historyCount = eventCount != null ? eventCount : 0;
+        if (historyCount == 0 || (!force && historyCount < minHistoryCount)) {
+            return;
+        }
+        UserPreference preference = userPreferenceMapper.getUserPreferenceByUserId(userId);
+        if (!force && preference != null && preference.getLastAnalyzedLogCount() != null
+                && historyCount - preference.getLastAnalyzedLogCount() < analysisTriggerCount) {
+            return;
+        }
+        analyzeAndUpdatePreference(userId, historyCount, preference);
+    }
+
+    /**
+     * Analyze and update user preference
+     * 分析并更新用户偏好
+     */
+    private void analyzeAndUpdatePreference(Integer userId, int historyCount, UserPreference preference) throws Exception {
+        // Get recent browsing history
+        List<BrowsingHistory> history = browsingHistoryMapper.getUserHistory(userId, HISTORY_LIMIT);
+
+        // 批量加载浏览过的导师
+        Set<Integer> mentorIds = new LinkedHashSet<>();
+        for (BrowsingHistory h : history) {
+            if ("mentor".equals(h.getTargetType()) && h.getTargetId() != null) {
+                mentorIds.add(h.getTargetId());
+            }
+        }
+        Map<Integer, Mentor> mentors = new HashMap<>();
+        if (!mentorIds.isEmpty()) {
+            for (Mentor mentor : mentorMapper.getMentorsByIds(new ArrayList<>(mentorIds))) {
+                mentors.put(mentor.getId(), mentor);
+            }
+        }
+
+        // Build history data string for LLM
+        StringBuilder historyData = new StringBuilder();
+        for (BrowsingHistory h : history) {
+            if ("mentor".equals(h.getTargetType())) {
+                Mentor mentor = mentors.get(h.getTargetId());
+                if (mentor != null) {
+                    historyData.append(String.format("- 浏览了导师：%s，研究方向：%s\n",
+                            mentor.getName(), mentor.getResearchAreas()));
+                }
+            }
+        }
+        if (historyData.length() == 0) {
+            return;
+        }
+
+        // Call LLM to analyze preferences
+        String llmResponse = llmService.analyzeUserPreferences(historyData.toString());
+
+        // Parse LLM response
+        JsonNode jsonResponse = objectMapper.readTree(llmResponse);
+        String summary = jsonResponse.path("summary").asText();
+        String keywords = jsonResponse.path("keywords").toString();
+        String topics = jsonResponse.path("topics").toString();
+
+        // Save or update preference
+        if (preference == null) {
+            preference = UserPreference.builder()
+                    .userId(userId)
+                    .userType("student")
+                    .preferenceText(summary)
+                    .preferenceKeywords(keywords)
+                    .preferenceTopics(topics)
+                    .lastAnalyzedLogCount(historyCount)
+                    .currentLogCount(historyCount)
+                    .analysisCount(1)
+                    .createTime(new Date())
+                    .updateTime(new Date())
+                    .build();
+            userPreferenceMapper.insertUserPreference(preference);
+        } else {
+            preference.setPreferenceText(summary);
+            preference.setPreferenceKeywords(keywords);
+            preference.setPreferenceTopics(topics);
+            preference.setLastAnalyzedLogCount(historyCount);
+            preference.setCurrentLogCount(historyCount);
+            preference.setAnalysisCount(preference.getAnalysisCount() + 1);
+            preference.setUpdateTime(new Date());
+            userPreferenceMapper.updateUserPreference(preference);
+        }
+
+        log.info("Updated preference for user {} from {} history records", userId, historyCount);
+    }
+}
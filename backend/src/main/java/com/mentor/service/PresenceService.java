@@ -0,0 +1,407 @@
+package com.mentor.service;
+
+import com.mentor.config.OutboundCoalescingInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presence Service
+ * 在线状态与输入状态：作为 clientInboundChannel 拦截器，根据 STOMP CONNECT / DISCONNECT 维护在线用户
+ *
+ * - 本节点在线表按 userId 分片，每片独立加锁；客户端在 CONNECT 帧中携带 userId 头；
+ * - 每个节点把本地在线用户写入 Redis 哈希 presence:node:{nodeId}：上下线时单独增删字段，
+ *   定时任务把本地快照合并写入并续期，只删除快照中没有、复查后仍不在线且值未被改写的字段，
+ *   存活节点登记在有序集合 presence:nodes 中，节点宕机后随 TTL 过期；
+ * - 用户在全部节点上由离线变为在线、或最后一个连接断开超过 offline-debounce-ms 后，
+ *   向 /topic/presence/{userId} 推送状态变化（断线重连期间不推送）；
+ * - 输入状态按用户与会话节流，转发到会话的 /typing 频道并带合并键。
+ */
+@Slf4j
+@Service
+public class PresenceService implements ChannelInterceptor {
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Lazy
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${presence.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${presence.shards:16}")
+    private Integer shardCount;
+
+    @Value("${presence.ttl-ms:60000}")
+    private Long ttlMs;
+
+    @Value("${presence.offline-debounce-ms:5000}")
+    private Long offlineDebounceMs;
+
+    @Value("${presence.typing-throttle-ms:2000}")
+    private Long typingThrottleMs;
+
+    private static final String USER_HEADER = "userId";
+    private static final String KEY_NODES = "presence:nodes";
+    private static final String KEY_NODE_PREFIX = "presence:node:";
+    private static final String PRESENCE_TOPIC = "/topic/presence/";
+
+    // ARGV 为 (字段, 读取时的值) 对：值未被并发的上线改写时才删除
+    private static final DefaultRedisScript<Long> REMOVE_STALE_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 "
+                    + "for i = 1, #ARGV, 2 do "
+                    + "if redis.call('hget', KEYS[1], ARGV[i]) == ARGV[i + 1] then "
+                    + "redis.call('hdel', KEYS[1], ARGV[i]) n = n + 1 end "
+                    + "end return n", Long.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 分片：userId -> 本节点的会话集合
+    private Map<Integer, Set<String>>[] shards;
+    // sessionId -> userId
+    private final Map<String, Integer> userBySession = new ConcurrentHashMap<>();
+    // userId -> 延迟发布离线的截止时间
+    private final Map<Integer, Long> pendingOffline = new ConcurrentHashMap<>();
+    // userId:conversation -> 上次转发“正在输入”的时间
+    private final Map<String, Long> typingSentAt = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        shards = new Map[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new HashMap<>();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (type == null || sessionId == null) {
+            return message;
+        }
+        if (type == SimpMessageType.CONNECT) {
+            String userId = SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader(USER_HEADER);
+            if (userId != null) {
+                try {
+                    connect(sessionId, Integer.valueOf(userId.trim()));
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring invalid userId header {} on session {}", userId, sessionId);
+                }
+            }
+        } else if (type == SimpMessageType.DISCONNECT) {
+            disconnect(sessionId);
+        }
+        return message;
+    }
+
+    private void connect(String sessionId, Integer userId) {
+        userBySession.put(sessionId, userId);
+        Map<Integer, Set<String>> shard = shardOf(userId);
+        boolean first;
+        synchronized (shard) {
+            Set<String> sessions = shard.computeIfAbsent(userId, k -> new HashSet<>());
+            first = sessions.isEmpty();
+            sessions.add(sessionId);
+        }
+        if (!first) {
+            return;
+        }
+        // 离线尚未发布（断线重连）时不推送
+        boolean reconnected = pendingOffline.remove(userId) != null;
+        boolean onlineElsewhere = !reconnected && isOnlineRemotely(userId);
+        markOnline(userId);
+        if (!reconnected && !onlineElsewhere) {
+            publishPresence(userId, true);
+        }
+    }
+
+    private void disconnect(String sessionId) {
+        Integer userId = userBySession.remove(sessionId);
+        if (userId == null) {
+            return;
+        }
+        Map<Integer, Set<String>> shard = shardOf(userId);
+        boolean last = false;
+        synchronized (shard) {
+            Set<String> sessions = shard.get(userId);
+            if (sessions != null) {
+                sessions.remove(sessionId);
+                if (sessions.isEmpty()) {
+                    shard.remove(userId);
+                    last = true;
+                }
+            }
+        }
+        if (last) {
+            pendingOffline.put(userId, System.currentTimeMillis() + offlineDebounceMs);
+        }
+    }
+
+    /**
+     * 发布到期的离线状态
+     */
+    @Scheduled(fixedDelayString = "${presence.offline-check-interval-ms:1000}")
+    public void flushOffline() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, Long> entry : pendingOffline.entrySet()) {
+            Integer userId = entry.getKey();
+            if (entry.getValue() > now || !pendingOffline.remove(userId, entry.getValue())) {
+                continue;
+            }
+            if (isOnlineLocally(userId)) {
+                continue;
+            }
+            markOffline(userId);
+            if (isOnlineLocally(userId)) {
+                // 删除字段期间重连：connect 写入的字段可能已被删掉，补写回去
+                markOnline(userId);
+                continue;
+            }
+            if (!isOnlineRemotely(userId)) {
+                publishPresence(userId, false);
+                if (isOnlineLocally(userId)) {
+                    // 发布期间重连：上线通知可能先于离线通知送达，再补发一次上线
+                    markOnline(userId);
+                    publishPresence(userId, true);
+                }
+            }
+        }
+        typingSentAt.values().removeIf(sentAt -> now - sentAt > typingThrottleMs);
+    }
+
+    /**
+     * 定时把本节点的在线用户合并写入在线哈希并续期
+     * 不整体替换哈希：快照之后才上线的用户由 connect 单独写入，替换会把它们丢掉
+     */
+    @Scheduled(fixedDelayString = "${presence.refresh-interval-ms:20000}")
+    public void refresh() {
+        if (!enabled || redisTemplate == null) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            String key = KEY_NODE_PREFIX + nodeId;
+            Map<String, Object> users = new HashMap<>();
+            for (Map<Integer, Set<String>> shard : shards) {
+                synchronized (shard) {
+                    for (Integer userId : shard.keySet()) {
+                        users.put(String.valueOf(userId), now);
+                    }
+                }
+            }
+            // 尚未发布离线的用户仍视为在线
+            for (Integer userId : pendingOffline.keySet()) {
+                users.put(String.valueOf(userId), now);
+            }
+            if (!users.isEmpty()) {
+                redisTemplate.opsForHash().putAll(key, users);
+            }
+            // 快照中没有的字段：复查本地状态，仍不在线时按读取到的值条件删除
+            List<String> stale = new ArrayList<>();
+            for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(key).entrySet()) {
+                String field = String.valueOf(entry.getKey());
+                if (users.containsKey(field) || entry.getValue() == null) {
+                    continue;
+                }
+                Integer userId = Integer.valueOf(field);
+                if (!isOnlineLocally(userId) && !pendingOffline.containsKey(userId)) {
+                    stale.add(field);
+                    stale.add(String.valueOf(entry.getValue()));
+                }
+            }
+            if (!stale.isEmpty()) {
+                redisTemplate.execute(REMOVE_STALE_SCRIPT, new StringRedisSerializer(),
+                        new GenericToStringSerializer<>(Long.class), Collections.singletonList(key), stale.toArray());
+            }
+            redisTemplate.expire(key, ttlMs, TimeUnit.MILLISECONDS);
+            redisTemplate.opsForZSet().add(KEY_NODES, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(KEY_NODES, 0, now - ttlMs);
+        } catch (Exception e) {
+            log.warn("Failed to refresh presence: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.delete(KEY_NODE_PREFIX + nodeId);
+            redisTemplate.opsForZSet().remove(KEY_NODES, nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to clear presence on shutdown: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 批量查询在线状态（本节点优先，其余查询各存活节点的在线哈希）
+     */
+    public Map<Integer, Boolean> lookup(Collection<Integer> userIds) {
+        Map<Integer, Boolean> result = new LinkedHashMap<>();
+        List<Integer> remaining = new ArrayList<>();
+        for (Integer userId : userIds) {
+            if (isOnlineLocally(userId) || pendingOffline.containsKey(userId)) {
+                result.put(userId, true);
+            } else {
+                result.put(userId, false);
+                remaining.add(userId);
+            }
+        }
+        if (remaining.isEmpty() || redisTemplate == null) {
+            return result;
+        }
+        try {
+            List<Object> fields = new ArrayList<>();
+            for (Integer userId : remaining) {
+                fields.add(String.valueOf(userId));
+            }
+            for (String node : liveNodes()) {
+                List<Object> values = redisTemplate.opsForHash().multiGet(KEY_NODE_PREFIX + node, fields);
+                for (int i = 0; i < remaining.size(); i++) {
+                    if (values.get(i) != null) {
+                        result.put(remaining.get(i), true);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to look up presence: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 转发输入状态到会话频道：开始输入按 typing-throttle-ms 节流，停止输入立即转发
+     */
+    public void onTyping(Integer userId, String conversationTopic, boolean typing) {
+        if (!enabled || userId == null || conversationTopic == null) {
+            return;
+        }
+        String throttleKey = userId + ":" + conversationTopic;
+        long now = System.currentTimeMillis();
+        if (typing) {
+            Long last = typingSentAt.get(throttleKey);
+            if (last != null && now - last < typingThrottleMs) {
+                return;
+            }
+            typingSentAt.put(throttleKey, now);
+        } else {
+            typingSentAt.remove(throttleKey);
+        }
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "TYPING");
+        event.put("userId", userId);
+        event.put("typing", typing);
+        String destination = conversationTopic + "/typing";
+        messagingTemplate.convertAndSend(destination, event, Collections.singletonMap(
+                OutboundCoalescingInterceptor.COALESCE_HEADER, destination + ":" + userId));
+    }
+
+    private void publishPresence(Integer userId, boolean online) {
+        try {
+            Map<String, Object> event = new HashMap<>();
+            event.put("type", "PRESENCE");
+            event.put("userId", userId);
+            event.put("online", online);
+            event.put("time", new Date());
+            String destination = PRESENCE_TOPIC + userId;
+            messagingTemplate.convertAndSend(destination, event, Collections.singletonMap(
+                    OutboundCoalescingInterceptor.COALESCE_HEADER, destination));
+        } catch (Exception e) {
+            log.warn("Failed to publish presence for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void markOnline(Integer userId) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            String key = KEY_NODE_PREFIX + nodeId;
+            redisTemplate.opsForHash().put(key, String.valueOf(userId), System.currentTimeMillis());
+            redisTemplate.expire(key, ttlMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to mark user {} online: {}", userId, e.getMessage());
+        }
+    }
+
+    private void markOffline(Integer userId) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().delete(KEY_NODE_PREFIX + nodeId, String.valueOf(userId));
+        } catch (Exception e) {
+            log.warn("Failed to mark user {} offline: {}", userId, e.getMessage());
+        }
+    }
+
+    private boolean isOnlineLocally(Integer userId) {
+        Map<Integer, Set<String>> shard = shardOf(userId);
+        synchronized (shard) {
+            return shard.containsKey(userId);
+        }
+    }
+
+    private boolean isOnlineRemotely(Integer userId) {
+        if (redisTemplate == null) {
+            return false;
+        }
+        try {
+            for (String node : liveNodes()) {
+                if (!nodeId.equals(node)
+                        && redisTemplate.opsForHash().hasKey(KEY_NODE_PREFIX + node, String.valueOf(userId))) {
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check presence of user {}: {}", userId, e.getMessage());
+        }
+        return false;
+    }
+
+    private Set<String> liveNodes() {
+        Set<Object> nodes = redisTemplate.opsForZSet().rangeByScore(KEY_NODES,
+                System.currentTimeMillis() - ttlMs, Double.POSITIVE_INFINITY);
+        Set<String> result = new HashSet<>();
+        if (nodes != null) {
+            for (Object node : nodes) {
+                result.add(String.valueOf(node));
+            }
+        }
+        // 本节点尚未完成首次续期时也要包含在内
+        result.add(nodeId);
+        return result;
+    }
+
+    private Map<Integer, Set<String>> shardOf(Integer userId) {
+        return shards[Math.floorMod(userId, shards.length)];
+    }
+}
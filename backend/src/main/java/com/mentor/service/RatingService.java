@@ -26,6 +26,9 @@ public class RatingService {
     @Autowired
     private MentorMapper mentorMapper;
 
+    @Autowired
+    private CounterAggregationService counterAggregationService;
+
     /**
      * Create rating
      * 创建评分
@@ -102,7 +105,7 @@ public class RatingService {
      * 根据ID获取评分
      */
     public Rating getRatingById(Integer id) {
-        return ratingMapper.getRatingById(id);
+        return counterAggregationService.withPendingHelpful(ratingMapper.getRatingById(id));
     }
 
     /**
@@ -111,7 +114,7 @@ public class RatingService {
      */
     public List<Rating> getRatingsByMentorId(Integer mentorId, Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return ratingMapper.getRatingsByMentorId(mentorId, offset, limit);
+        return counterAggregationService.withPendingHelpful(ratingMapper.getRatingsByMentorId(mentorId, offset, limit));
     }
 
     /**
@@ -120,16 +123,15 @@ public class RatingService {
      */
     public List<Rating> getRatingsByStudentId(Integer studentId, Integer page, Integer limit) {
         int offset = (page - 1) * limit;
-        return ratingMapper.getRatingsByStudentId(studentId, offset, limit);
+        return counterAggregationService.withPendingHelpful(ratingMapper.getRatingsByStudentId(studentId, offset, limit));
     }
 
     /**
      * Mark rating as helpful
-     * 标记评分有用
+     * 标记评分有用（内存累加，定时批量写回）
      */
-    @Transactional
     public void markRatingHelpful(Integer id) {
-        ratingMapper.incrementHelpfulCount(id);
+        counterAggregationService.incrementRatingHelpful(id);
     }
 
     /**
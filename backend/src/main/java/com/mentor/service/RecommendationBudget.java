@@ -0,0 +1,90 @@
+package com.mentor.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recommendation Latency Budget
+ * 单次推荐请求的时间预算，在推荐流水线各阶段之间传递
+ * 各阶段根据剩余预算选择更廉价的策略（跳过细排、模板理由、词法结果等）
+ */
+public class RecommendationBudget {
+
+    public static final String STAGE_CACHE = "cache";
+    public static final String STAGE_SEARCH = "semantic_search";
+    public static final String STAGE_VECTOR_SEARCH = "vector_search";
+    public static final String STAGE_LEXICAL = "lexical";
+    public static final String STAGE_HYDRATION = "hydration";
+    public static final String STAGE_RERANK = "llm_rerank";
+    public static final String STAGE_REASONS = "llm_reasons";
+    public static final String STAGE_FALLBACK = "fallback";
+
+    private final long budgetMs;
+    private final long startNanos;
+    private final long deadlineNanos;
+
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+    private final List<String> degradations = new ArrayList<>();
+
+    private RecommendationBudget(long budgetMs) {
+        this.budgetMs = budgetMs;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + budgetMs * 1_000_000L;
+    }
+
+    /**
+     * 从当前时刻开始计时
+     */
+    public static RecommendationBudget start(long budgetMs) {
+        return new RecommendationBudget(budgetMs);
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    /**
+     * 剩余预算（毫秒），不会小于0
+     */
+    public long remainingMs() {
+        return Math.max(0L, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public boolean hasAtLeast(long ms) {
+        return remainingMs() >= ms;
+    }
+
+    public boolean isExhausted() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    /**
+     * 记录某阶段耗时，stageStartNanos 为阶段开始时的 System.nanoTime()
+     */
+    public void recordStage(String stage, long stageStartNanos) {
+        long millis = (System.nanoTime() - stageStartNanos) / 1_000_000L;
+        stageMillis.merge(stage, millis, Long::sum);
+    }
+
+    /**
+     * 记录一次降级，例如 llm_rerank:skipped
+     */
+    public void degrade(String stage, String strategy) {
+        degradations.add(stage + ":" + strategy);
+    }
+
+    public Map<String, Long> getStageMillis() {
+        return Collections.unmodifiableMap(stageMillis);
+    }
+
+    public List<String> getDegradations() {
+        return Collections.unmodifiableList(degradations);
+    }
+}
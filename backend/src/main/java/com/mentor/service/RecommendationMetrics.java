@@ -0,0 +1,82 @@
+package com.mentor.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recommendation Metrics
+ * 推荐流水线指标：各阶段耗时与降级次数，用于调优时间预算
+ */
+@Service
+public class RecommendationMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final Map<String, StageStats> stages = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> degradations = new ConcurrentHashMap<>();
+
+    /**
+     * 请求结束时记录该请求的预算使用情况
+     */
+    public void record(RecommendationBudget budget) {
+        requests.increment();
+        if (budget.isExhausted()) {
+            overBudget.increment();
+        }
+        for (Map.Entry<String, Long> entry : budget.getStageMillis().entrySet()) {
+            stages.computeIfAbsent(entry.getKey(), k -> new StageStats()).add(entry.getValue());
+        }
+        for (String degradation : budget.getDegradations()) {
+            degradations.computeIfAbsent(degradation, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stageSnapshot = new TreeMap<>();
+        for (Map.Entry<String, StageStats> entry : stages.entrySet()) {
+            stageSnapshot.put(entry.getKey(), entry.getValue().toMap());
+        }
+        Map<String, Long> degradationSnapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : degradations.entrySet()) {
+            degradationSnapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        Map<String, Object> result = new TreeMap<>();
+        result.put("requests", requests.sum());
+        result.put("overBudget", overBudget.sum());
+        result.put("stages", stageSnapshot);
+        result.put("degradations", degradationSnapshot);
+        return result;
+    }
+
+    private static class StageStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalMillis = new LongAdder();
+        final AtomicLong maxMillis = new AtomicLong();
+
+        void add(long millis) {
+            count.increment();
+            totalMillis.add(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long n = count.sum();
+            long total = totalMillis.sum();
+            Map<String, Object> map = new TreeMap<>();
+            map.put("count", n);
+            map.put("totalMs", total);
+            map.put("avgMs", n > 0 ? (double) total / n : 0.0);
+            map.put("maxMs", maxMillis.get());
+            return map;
+        }
+    }
+}
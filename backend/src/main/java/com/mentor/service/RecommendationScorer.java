@@ -68,11 +68,8 @@ public class RecommendationScorer {
         double workloadScore = calculateWorkloadScore(mentor);
 
         // Calculate weighted total score
-        double totalScore =
-            researchMatchScore * studentResearchMatchWeight +
-            qualityScore * studentQualityScoreWeight +
-            availabilityScore * studentAvailabilityWeight +
-            workloadScore * studentWorkloadWeight;
+        double totalScore = studentPreferenceScore(researchMatchScore,
+            mentorStaticScore(qualityScore, availabilityScore, workloadScore));
 
         // Store individual scores
         Map<String, Double> details = new HashMap<>();
@@ -109,11 +106,8 @@ public class RecommendationScorer {
         double timeMatchScore = calculateTimeMatchScore(student);
 
         // Calculate weighted total score
-        double totalScore =
-            researchMatchScore * mentorResearchMatchWeight +
-            academicAbilityScore * mentorAcademicAbilityWeight +
-            backgroundMatchScore * mentorBackgroundMatchWeight +
-            timeMatchScore * mentorTimeMatchWeight;
+        double totalScore = mentorPreferenceScore(researchMatchScore, backgroundMatchScore,
+            studentStaticScore(academicAbilityScore, timeMatchScore));
 
         // Store individual scores
         Map<String, Double> details = new HashMap<>();
@@ -130,6 +124,59 @@ public class RecommendationScorer {
         return result;
     }
 
+    /**
+     * Mentor-dependent part of the student-to-mentor score
+     * 学生找导师得分中只与导师相关的部分（质量、接收能力、工作强度），批量匹配时每位导师只需计算一次
+     */
+    public double mentorStaticScore(Mentor mentor) {
+        return mentorStaticScore(calculateMentorQualityScore(mentor), calculateAvailabilityScore(mentor),
+            calculateWorkloadScore(mentor));
+    }
+
+    private double mentorStaticScore(double qualityScore, double availabilityScore, double workloadScore) {
+        return qualityScore * studentQualityScoreWeight +
+            availabilityScore * studentAvailabilityWeight +
+            workloadScore * studentWorkloadWeight;
+    }
+
+    /**
+     * Student-to-mentor total score from precomputed components
+     * 由预计算分量得到学生找导师的综合得分，与 scoreStudentToMentor 的 totalScore 一致
+     */
+    public double studentPreferenceScore(double vectorSimilarity, double mentorStaticScore) {
+        return vectorSimilarity * studentResearchMatchWeight + mentorStaticScore;
+    }
+
+    /**
+     * Student-dependent part of the mentor-to-student score
+     * 导师找学生得分中只与学生相关的部分（学术能力、时间匹配）
+     */
+    public double studentStaticScore(Student student) {
+        return studentStaticScore(calculateAcademicAbilityScore(student), calculateTimeMatchScore(student));
+    }
+
+    private double studentStaticScore(double academicAbilityScore, double timeMatchScore) {
+        return academicAbilityScore * mentorAcademicAbilityWeight +
+            timeMatchScore * mentorTimeMatchWeight;
+    }
+
+    /**
+     * Mentor-to-student total score from precomputed components
+     * 由预计算分量得到导师找学生的综合得分，与 scoreMentorToStudent 的 totalScore 一致
+     */
+    public double mentorPreferenceScore(Mentor mentor, Student student, double vectorSimilarity,
+                                        double studentStaticScore) {
+        return mentorPreferenceScore(vectorSimilarity, calculateBackgroundMatchScore(mentor, student),
+            studentStaticScore);
+    }
+
+    private double mentorPreferenceScore(double vectorSimilarity, double backgroundMatchScore,
+                                         double studentStaticScore) {
+        return vectorSimilarity * mentorResearchMatchWeight +
+            backgroundMatchScore * mentorBackgroundMatchWeight +
+            studentStaticScore;
+    }
+
     /**
      * Calculate mentor quality score
      * 计算导师质量得分
@@ -20,7 +20,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -46,6 +48,12 @@ public class SemanticRecommendationService {
     @Autowired
     private LLMService llmService;
 
+    @Autowired
+    private RecommendationMetrics recommendationMetrics;
+
+    @Autowired
+    private TrendingMentorService trendingMentorService;
+
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -58,19 +66,53 @@ public class SemanticRecommendationService {
     @Value("${recommendation.cache-ttl:3600}")
     private Long cacheTtl;
 
+    @Value("${recommendation.budget.total-ms:800}")
+    private Long budgetMs;
+
+    @Value("${recommendation.budget.search-min-ms:150}")
+    private Long searchMinMs;
+
+    @Value("${recommendation.budget.rerank-min-ms:400}")
+    private Long rerankMinMs;
+
+    @Value("${recommendation.budget.degraded-cache-ttl:60}")
+    private Long degradedCacheTtl;
+
+    @Value("${recommendation.reason-stream.timeout-ms:20000}")
+    private Long reasonStreamTimeoutMs;
+
+    @Value("${recommendation.reason-stream.count:5}")
+    private Integer reasonStreamCount;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String CACHE_PREFIX_MENTOR = "semantic:mentor:";
     private static final String CACHE_PREFIX_STUDENT = "semantic:student:";
+    private static final String CACHE_PREFIX_LEXICAL = "semantic:lexical:";
+    private static final String CACHE_PREFIX_FEED_MENTOR = "semantic:feed:mentor:";
+    private static final String CACHE_PREFIX_FEED_STUDENT = "semantic:feed:student:";
+
+    // 进入 LLM 细排的候选数量
+    private static final int RERANK_WINDOW = 15;
 
     /**
      * 为学生获取导师推荐（基于多维度语义检索）
      */
     public List<Map<String, Object>> getMentorRecommendationsForStudent(Integer studentId, Integer limit) {
+        return getMentorRecommendationsForStudent(studentId, limit, RecommendationBudget.start(budgetMs));
+    }
+
+    /**
+     * 为学生获取导师推荐，各阶段根据剩余时间预算选择降级策略
+     */
+    public List<Map<String, Object>> getMentorRecommendationsForStudent(Integer studentId, Integer limit,
+                                                                        RecommendationBudget budget) {
         try {
             // 检查缓存
+            long stageStart = System.nanoTime();
             String cacheKey = CACHE_PREFIX_MENTOR + studentId;
             List<Map<String, Object>> cached = getCachedResult(cacheKey);
+            budget.recordStage(RecommendationBudget.STAGE_CACHE, stageStart);
             if (cached != null && !cached.isEmpty()) {
                 return cached.stream().limit(limit).collect(Collectors.toList());
             }
@@ -79,6 +121,7 @@ public class SemanticRecommendationService {
             Student student = studentMapper.getStudentById(studentId);
             if (student == null) {
                 log.warn("Student not found: {}, returning fallback recommendations", studentId);
+                budget.degrade(RecommendationBudget.STAGE_FALLBACK, "student_not_found");
                 return getFallbackMentorRecommendations(studentId, limit);
             }
 
@@ -88,36 +131,45 @@ public class SemanticRecommendationService {
             // 构建多维度查询条件
             List<SearchCriteria> criteriaList = buildStudentSearchCriteria(student, preference);
 
-            // 对每个条件进行语义检索
+            // 对每个条件进行语义检索，预算不足时停止后续检索
             Map<Integer, MentorMatchResult> mentorScores = new HashMap<>();
-            
+
+            stageStart = System.nanoTime();
             for (SearchCriteria criteria : criteriaList) {
-                List<Map<String, Object>> searchResults = semanticSearchMentors(criteria.query, 30);
-                
+                if (!budget.hasAtLeast(searchMinMs)) {
+                    budget.degrade(RecommendationBudget.STAGE_SEARCH, "truncated");
+                    break;
+                }
+                List<Map<String, Object>> searchResults = semanticSearchMentors(criteria.query, 30, searchTimeout(budget));
+
                 for (Map<String, Object> result : searchResults) {
                     Integer mentorId = ((Number) result.get("id")).intValue();
                     double score = ((Number) result.get("score")).doubleValue();
-                    
+
                     MentorMatchResult matchResult = mentorScores.computeIfAbsent(
                         mentorId, k -> new MentorMatchResult(mentorId)
                     );
                     matchResult.addScore(criteria.dimension, score * criteria.weight);
                 }
             }
+            budget.recordStage(RecommendationBudget.STAGE_SEARCH, stageStart);
+
+            // 批量获取导师详情并计算综合得分（完整排序用于后续分页）
+            stageStart = System.nanoTime();
+            Map<Integer, Mentor> mentorsById = loadMentorsByIds(mentorScores.keySet());
 
-            // 获取导师详情并计算综合得分
             List<Map<String, Object>> recommendations = new ArrayList<>();
             for (MentorMatchResult matchResult : mentorScores.values()) {
-                Mentor mentor = mentorMapper.getMentorById(matchResult.mentorId);
+                Mentor mentor = mentorsById.get(matchResult.mentorId);
                 if (mentor == null || mentor.getStatus() != 1) continue;
 
                 // 计算综合得分
                 double totalScore = matchResult.getTotalScore();
-                
+
                 // 添加额外评分因素
                 double bonus = calculateMentorBonus(mentor);
                 totalScore += bonus;
-                
+
                 // 将 bonus 也加入到 matchDetails
                 Map<String, Double> detailScores = matchResult.getDetailScores();
                 if (bonus > 0) {
@@ -128,14 +180,16 @@ public class SemanticRecommendationService {
                 recommendation.put("mentor", mentor);
                 recommendation.put("score", Math.min(totalScore, 1.0));
                 recommendation.put("matchDetails", detailScores);
-                
+
                 recommendations.add(recommendation);
             }
+            budget.recordStage(RecommendationBudget.STAGE_HYDRATION, stageStart);
 
-            // 如果语义检索没有结果，使用基于关键词的简单匹配
+            // 如果语义检索没有结果（或预算不足未检索），使用基于关键词的简单匹配
             if (recommendations.isEmpty()) {
                 log.info("Semantic search returned no results, falling back to keyword matching for student: {}", studentId);
-                recommendations = getKeywordBasedMentorRecommendations(student, preference, limit * 2);
+                budget.degrade(RecommendationBudget.STAGE_SEARCH, "lexical");
+                recommendations = getLexicalMentorRecommendations(student, preference, limit * 2, budget);
             }
 
             // 按得分排序
@@ -143,26 +197,31 @@ public class SemanticRecommendationService {
                 (Double) b.get("score"), (Double) a.get("score")
             ));
 
-            // 取 top15 进行 LLM 细排，输出 top10
+            // 取 top15 进行 LLM 细排，输出 top10（仅第一页细排，后续页面按完整排序分页）
             List<Map<String, Object>> topCandidates = recommendations.stream()
-                .limit(15)
+                .limit(RERANK_WINDOW)
                 .collect(Collectors.toList());
 
             List<Map<String, Object>> finalResult;
             if (topCandidates.size() > 0) {
-                finalResult = llmRerankMentors(student, preference, topCandidates, limit);
+                finalResult = llmRerankMentors(student, preference, topCandidates, limit, budget);
             } else {
                 finalResult = topCandidates;
             }
 
-            // 缓存结果
-            cacheResult(cacheKey, finalResult);
+            // 缓存结果（降级结果只短暂缓存，避免长时间提供低质量推荐）
+            long ttl = budget.getDegradations().isEmpty() ? cacheTtl : degradedCacheTtl;
+            cacheResult(cacheKey, finalResult, ttl);
+            cacheFeed(CACHE_PREFIX_FEED_MENTOR + studentId, recommendations, finalResult, "mentor", ttl);
 
             return finalResult;
 
         } catch (Exception e) {
             log.error("Failed to get mentor recommendations for student: {}, using fallback", studentId, e);
+            budget.degrade(RecommendationBudget.STAGE_FALLBACK, "error");
             return getFallbackMentorRecommendations(studentId, limit);
+        } finally {
+            recommendationMetrics.record(budget);
         }
     }
 
@@ -170,10 +229,20 @@ public class SemanticRecommendationService {
      * 为导师获取学生推荐（基于多维度语义检索）
      */
     public List<Map<String, Object>> getStudentRecommendationsForMentor(Integer mentorId, Integer limit) {
+        return getStudentRecommendationsForMentor(mentorId, limit, RecommendationBudget.start(budgetMs));
+    }
+
+    /**
+     * 为导师获取学生推荐，各阶段根据剩余时间预算选择降级策略
+     */
+    public List<Map<String, Object>> getStudentRecommendationsForMentor(Integer mentorId, Integer limit,
+                                                                        RecommendationBudget budget) {
         try {
             // 检查缓存
+            long stageStart = System.nanoTime();
             String cacheKey = CACHE_PREFIX_STUDENT + mentorId;
             List<Map<String, Object>> cached = getCachedResult(cacheKey);
+            budget.recordStage(RecommendationBudget.STAGE_CACHE, stageStart);
             if (cached != null && !cached.isEmpty()) {
                 return cached.stream().limit(limit).collect(Collectors.toList());
             }
@@ -187,36 +256,45 @@ public class SemanticRecommendationService {
             // 构建多维度查询条件
             List<SearchCriteria> criteriaList = buildMentorSearchCriteria(mentor);
 
-            // 对每个条件进行语义检索
+            // 对每个条件进行语义检索，预算不足时停止后续检索
             Map<Integer, StudentMatchResult> studentScores = new HashMap<>();
-            
+
+            stageStart = System.nanoTime();
             for (SearchCriteria criteria : criteriaList) {
-                List<Map<String, Object>> searchResults = semanticSearchStudents(criteria.query, 30);
-                
+                if (!budget.hasAtLeast(searchMinMs)) {
+                    budget.degrade(RecommendationBudget.STAGE_SEARCH, "truncated");
+                    break;
+                }
+                List<Map<String, Object>> searchResults = semanticSearchStudents(criteria.query, 30, searchTimeout(budget));
+
                 for (Map<String, Object> result : searchResults) {
                     Integer studentId = ((Number) result.get("id")).intValue();
                     double score = ((Number) result.get("score")).doubleValue();
-                    
+
                     StudentMatchResult matchResult = studentScores.computeIfAbsent(
                         studentId, k -> new StudentMatchResult(studentId)
                     );
                     matchResult.addScore(criteria.dimension, score * criteria.weight);
                 }
             }
+            budget.recordStage(RecommendationBudget.STAGE_SEARCH, stageStart);
+
+            // 批量获取学生详情并计算综合得分（完整排序用于后续分页）
+            stageStart = System.nanoTime();
+            Map<Integer, Student> studentsById = loadStudentsByIds(studentScores.keySet());
 
-            // 获取学生详情并计算综合得分
             List<Map<String, Object>> recommendations = new ArrayList<>();
             for (StudentMatchResult matchResult : studentScores.values()) {
-                Student student = studentMapper.getStudentById(matchResult.studentId);
+                Student student = studentsById.get(matchResult.studentId);
                 if (student == null || student.getStatus() != 1) continue;
 
                 // 计算综合得分
                 double totalScore = matchResult.getTotalScore();
-                
+
                 // 添加额外评分因素
                 double bonus = calculateStudentBonus(student);
                 totalScore += bonus;
-                
+
                 // 将 bonus 也加入到 matchDetails
                 Map<String, Double> detailScores = matchResult.getDetailScores();
                 if (bonus > 0) {
@@ -227,38 +305,50 @@ public class SemanticRecommendationService {
                 recommendation.put("student", student);
                 recommendation.put("score", Math.min(totalScore, 1.0));
                 recommendation.put("matchDetails", detailScores);
-                
+
                 recommendations.add(recommendation);
             }
+            budget.recordStage(RecommendationBudget.STAGE_HYDRATION, stageStart);
 
             // 按得分排序
             recommendations.sort((a, b) -> Double.compare(
                 (Double) b.get("score"), (Double) a.get("score")
             ));
 
-            // 取 top15 进行 LLM 细排，输出 top10
+            // 取 top15 进行 LLM 细排，输出 top10（仅第一页细排，后续页面按完整排序分页）
             List<Map<String, Object>> topCandidates = recommendations.stream()
-                .limit(15)
+                .limit(RERANK_WINDOW)
                 .collect(Collectors.toList());
 
             List<Map<String, Object>> finalResult;
             if (topCandidates.size() > 0) {
-                finalResult = llmRerankStudents(mentor, topCandidates, limit);
+                finalResult = llmRerankStudents(mentor, topCandidates, limit, budget);
             } else {
                 finalResult = topCandidates;
             }
 
-            // 缓存结果
-            cacheResult(cacheKey, finalResult);
+            // 缓存结果（降级结果只短暂缓存，避免长时间提供低质量推荐）
+            long ttl = budget.getDegradations().isEmpty() ? cacheTtl : degradedCacheTtl;
+            cacheResult(cacheKey, finalResult, ttl);
+            cacheFeed(CACHE_PREFIX_FEED_STUDENT + mentorId, recommendations, finalResult, "student", ttl);
 
             return finalResult;
 
         } catch (Exception e) {
             log.error("Failed to get student recommendations for mentor: {}", mentorId, e);
             throw new RuntimeException("获取推荐失败", e);
+        } finally {
+            recommendationMetrics.record(budget);
         }
     }
 
+    /**
+     * 单次语义检索的超时时间：不超过配置值，也不超过剩余预算
+     */
+    private int searchTimeout(RecommendationBudget budget) {
+        return (int) Math.max(1L, Math.min(timeout, budget.remainingMs()));
+    }
+
     /**
      * 构建学生的多维度搜索条件
      */
@@ -379,11 +469,11 @@ public class SemanticRecommendationService {
     /**
      * 语义搜索导师
      */
-    private List<Map<String, Object>> semanticSearchMentors(String query, int topK) {
+    private List<Map<String, Object>> semanticSearchMentors(String query, int topK, int timeoutMs) {
         try {
             RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectTimeout(timeout)
-                .setSocketTimeout(timeout)
+                .setConnectTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
                 .build();
 
             try (CloseableHttpClient httpClient = HttpClients.custom()
@@ -433,11 +523,11 @@ public class SemanticRecommendationService {
     /**
      * 语义搜索学生
      */
-    private List<Map<String, Object>> semanticSearchStudents(String query, int topK) {
+    private List<Map<String, Object>> semanticSearchStudents(String query, int topK, int timeoutMs) {
         try {
             RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectTimeout(timeout)
-                .setSocketTimeout(timeout)
+                .setConnectTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
                 .build();
 
             try (CloseableHttpClient httpClient = HttpClients.custom()
@@ -532,29 +622,40 @@ public class SemanticRecommendationService {
 
     /**
      * LLM 细排：对 top15 导师候选进行重排序，输出 top10 及理由
+     * 剩余预算不足时跳过细排，直接使用原排序 + 模板理由
      */
     private List<Map<String, Object>> llmRerankMentors(Student student, UserPreference preference,
-                                                        List<Map<String, Object>> candidates, int limit) {
+                                                        List<Map<String, Object>> candidates, int limit,
+                                                        RecommendationBudget budget) {
         if (candidates.isEmpty()) return candidates;
-        
-        try {
-            // 构建重排序 prompt
-            String prompt = buildMentorRerankPrompt(student, preference, candidates, limit);
-            log.info("LLM rerank prompt length: {}", prompt.length());
-            
-            String response = llmService.callLLM(prompt);
-            log.info("LLM rerank response: {}", response);
-            
-            // 解析 LLM 响应，获取排序结果
-            List<Map<String, Object>> rerankedResult = parseMentorRerankResponse(response, candidates, limit);
-            
-            if (rerankedResult != null && !rerankedResult.isEmpty()) {
-                return rerankedResult;
+
+        long stageStart = System.nanoTime();
+        if (!budget.hasAtLeast(rerankMinMs)) {
+            budget.degrade(RecommendationBudget.STAGE_RERANK, "skipped");
+        } else {
+            try {
+                // 构建重排序 prompt
+                String prompt = buildMentorRerankPrompt(student, preference, candidates, limit);
+                log.info("LLM rerank prompt length: {}", prompt.length());
+
+                String response = llmService.callLLM(prompt, budget.remainingMs(), LLMCallSite.RERANK);
+                log.info("LLM rerank response: {}", response);
+
+                // 解析 LLM 响应，获取排序结果
+                List<Map<String, Object>> rerankedResult = parseMentorRerankResponse(response, candidates, limit);
+
+                if (rerankedResult != null && !rerankedResult.isEmpty()) {
+                    budget.recordStage(RecommendationBudget.STAGE_RERANK, stageStart);
+                    return rerankedResult;
+                }
+                budget.degrade(RecommendationBudget.STAGE_RERANK, "unparsable");
+            } catch (Exception e) {
+                log.warn("LLM rerank failed, using original order with template reasons", e);
+                budget.degrade(RecommendationBudget.STAGE_RERANK, "failed");
             }
-        } catch (Exception e) {
-            log.warn("LLM rerank failed, using original order with template reasons", e);
         }
-        
+        budget.recordStage(RecommendationBudget.STAGE_RERANK, stageStart);
+
         // 降级：使用原排序 + 模板理由
         return candidates.stream()
             .limit(limit)
@@ -664,29 +765,40 @@ public class SemanticRecommendationService {
 
     /**
      * LLM 细排：对 top15 学生候选进行重排序，输出 top10 及理由
+     * 剩余预算不足时跳过细排，直接使用原排序 + 模板理由
      */
     private List<Map<String, Object>> llmRerankStudents(Mentor mentor,
-                                                         List<Map<String, Object>> candidates, int limit) {
+                                                         List<Map<String, Object>> candidates, int limit,
+                                                         RecommendationBudget budget) {
         if (candidates.isEmpty()) return candidates;
-        
-        try {
-            // 构建重排序 prompt
-            String prompt = buildStudentRerankPrompt(mentor, candidates, limit);
-            log.info("LLM student rerank prompt length: {}", prompt.length());
-            
-            String response = llmService.callLLM(prompt);
-            log.info("LLM student rerank response: {}", response);
-            
-            // 解析 LLM 响应，获取排序结果
-            List<Map<String, Object>> rerankedResult = parseStudentRerankResponse(response, candidates, mentor, limit);
-            
-            if (rerankedResult != null && !rerankedResult.isEmpty()) {
-                return rerankedResult;
+
+        long stageStart = System.nanoTime();
+        if (!budget.hasAtLeast(rerankMinMs)) {
+            budget.degrade(RecommendationBudget.STAGE_RERANK, "skipped");
+        } else {
+            try {
+                // 构建重排序 prompt
+                String prompt = buildStudentRerankPrompt(mentor, candidates, limit);
+                log.info("LLM student rerank prompt length: {}", prompt.length());
+
+                String response = llmService.callLLM(prompt, budget.remainingMs(), LLMCallSite.RERANK);
+                log.info("LLM student rerank response: {}", response);
+
+                // 解析 LLM 响应，获取排序结果
+                List<Map<String, Object>> rerankedResult = parseStudentRerankResponse(response, candidates, mentor, limit);
+
+                if (rerankedResult != null && !rerankedResult.isEmpty()) {
+                    budget.recordStage(RecommendationBudget.STAGE_RERANK, stageStart);
+                    return rerankedResult;
+                }
+                budget.degrade(RecommendationBudget.STAGE_RERANK, "unparsable");
+            } catch (Exception e) {
+                log.warn("LLM student rerank failed, using original order with template reasons", e);
+                budget.degrade(RecommendationBudget.STAGE_RERANK, "failed");
             }
-        } catch (Exception e) {
-            log.warn("LLM student rerank failed, using original order with template reasons", e);
         }
-        
+        budget.recordStage(RecommendationBudget.STAGE_RERANK, stageStart);
+
         // 降级：使用原排序 + 模板理由
         return candidates.stream()
             .limit(limit)
@@ -914,6 +1026,181 @@ public class SemanticRecommendationService {
         return "该导师的研究方向与您的兴趣高度匹配。";
     }
 
+    /**
+     * 流式生成导师推荐理由（SSE）
+     * 推荐列表仍走缓存/预算管线；前 N 位导师的理由通过 LLM 流式接口生成，
+     * LLM 调用在 LLM 线程池中执行，请求线程返回 SseEmitter 后即释放
+     */
+    public SseEmitter streamMentorReasons(Integer studentId, Integer limit) {
+        SseEmitter emitter = new SseEmitter(reasonStreamTimeoutMs + 5000);
+        Student student = studentMapper.getStudentById(studentId);
+        List<Map<String, Object>> recs = getMentorRecommendationsForStudent(studentId, limit).stream()
+            .filter(rec -> rec.get("mentor") instanceof Mentor)
+            .limit(reasonStreamCount)
+            .collect(Collectors.toList());
+
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> templates = new ArrayList<>();
+        for (Map<String, Object> rec : recs) {
+            Mentor mentor = (Mentor) rec.get("mentor");
+            ids.add(mentor.getId());
+            names.add(mentor.getName());
+            templates.add(generateTemplateReason(mentor, student));
+        }
+
+        ReasonStream stream = new ReasonStream(emitter, "mentorId", ids, names, templates);
+        if (student == null || recs.isEmpty()) {
+            stream.finish(null);
+            return emitter;
+        }
+        UserPreference preference = userPreferenceMapper.getUserPreferenceByUserId(studentId);
+        stream.start(buildBatchMentorReasonPrompt(student, preference, recs));
+        return emitter;
+    }
+
+    /**
+     * 流式生成学生推荐理由（SSE）
+     */
+    public SseEmitter streamStudentReasons(Integer mentorId, Integer limit) {
+        SseEmitter emitter = new SseEmitter(reasonStreamTimeoutMs + 5000);
+        Mentor mentor = mentorMapper.getMentorById(mentorId);
+        List<Map<String, Object>> recs = getStudentRecommendationsForMentor(mentorId, limit).stream()
+            .filter(rec -> rec.get("student") instanceof Student)
+            .limit(reasonStreamCount)
+            .collect(Collectors.toList());
+
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> templates = new ArrayList<>();
+        for (Map<String, Object> rec : recs) {
+            Student student = (Student) rec.get("student");
+            ids.add(student.getId());
+            names.add(student.getName());
+            templates.add(mentor != null ? generateStudentTemplateReason(student, mentor) : "该学生的研究兴趣与您的方向匹配。");
+        }
+
+        ReasonStream stream = new ReasonStream(emitter, "studentId", ids, names, templates);
+        if (mentor == null || recs.isEmpty()) {
+            stream.finish(null);
+            return emitter;
+        }
+        stream.start(buildBatchStudentReasonPrompt(mentor, recs));
+        return emitter;
+    }
+
+    /**
+     * 单次理由流的状态
+     * 事件：candidates（待生成理由的对象列表）、delta（LLM 增量文本）、
+     * reason（每完成一行即推送一条理由，fallback=true 表示模板理由）、done。
+     * delta 回调在 LLM 线程中执行，超时回调在计时线程中执行，因此状态变更都加锁
+     */
+    private class ReasonStream {
+        private final SseEmitter emitter;
+        private final String idKey;
+        private final List<Integer> ids;
+        private final List<String> names;
+        private final List<String> templates;
+        private final StringBuilder pending = new StringBuilder();
+        private int nextIndex;
+        private boolean closed;
+
+        ReasonStream(SseEmitter emitter, String idKey, List<Integer> ids, List<String> names, List<String> templates) {
+            this.emitter = emitter;
+            this.idKey = idKey;
+            this.ids = ids;
+            this.names = names;
+            this.templates = templates;
+            emitter.onTimeout(this::close);
+            emitter.onCompletion(this::close);
+
+            List<Map<String, Object>> candidates = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Map<String, Object> candidate = new LinkedHashMap<>();
+                candidate.put("index", i);
+                candidate.put(idKey, ids.get(i));
+                candidate.put("name", names.get(i));
+                candidates.add(candidate);
+            }
+            send("candidates", candidates);
+        }
+
+        void start(String prompt) {
+            llmService.streamLLMAsync(prompt, reasonStreamTimeoutMs, LLMCallSite.REASON, this::onDelta)
+                .whenComplete((response, error) -> finish(error));
+        }
+
+        private synchronized void onDelta(String delta) {
+            if (closed) {
+                // 客户端已断开：抛出异常以中止读取，尽早释放 LLM 连接
+                throw new IllegalStateException("Reason stream closed");
+            }
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("text", delta);
+            send("delta", payload);
+
+            pending.append(delta);
+            int newline;
+            while ((newline = pending.indexOf("\n")) >= 0) {
+                emitLine(pending.substring(0, newline));
+                pending.delete(0, newline + 1);
+            }
+        }
+
+        synchronized void finish(Throwable error) {
+            if (closed) return;
+            if (error != null) {
+                log.warn("Reason stream failed, using templates: {}", error.getMessage());
+            } else {
+                emitLine(pending.toString());
+            }
+            pending.setLength(0);
+            // 未生成的理由用模板补齐
+            while (nextIndex < ids.size()) {
+                sendReason(templates.get(nextIndex), true);
+            }
+            send("done", Collections.singletonMap("count", ids.size()));
+            closed = true;
+            emitter.complete();
+        }
+
+        private void emitLine(String line) {
+            if (nextIndex >= ids.size()) return;
+            line = line.trim();
+            if (line.matches("^\\d+[.、:：].*")) {
+                line = line.replaceFirst("^\\d+[.、:：]\\s*", "");
+            }
+            String reason = cleanLLMResponse(line);
+            if (!reason.isEmpty()) {
+                sendReason(reason, false);
+            }
+        }
+
+        private void sendReason(String reason, boolean fallback) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("index", nextIndex);
+            payload.put(idKey, ids.get(nextIndex));
+            payload.put("reason", reason);
+            payload.put("fallback", fallback);
+            nextIndex++;
+            send("reason", payload);
+        }
+
+        private void send(String event, Object data) {
+            if (closed) return;
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Reason stream client disconnected");
+                closed = true;
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+        }
+    }
+
     /**
      * 生成学生推荐理由（优化版：一次LLM调用批量生成）
      */
@@ -1080,22 +1367,189 @@ public class SemanticRecommendationService {
         return null;
     }
 
-    private void cacheResult(String key, List<Map<String, Object>> result) {
+    private void cacheResult(String key, List<Map<String, Object>> result, long ttlSeconds) {
         if (redisTemplate == null) return;
         try {
-            redisTemplate.opsForValue().set(key, result, cacheTtl, TimeUnit.SECONDS);
+            redisTemplate.opsForValue().set(key, result, ttlSeconds, TimeUnit.SECONDS);
         } catch (Exception e) {
             log.warn("Cache write failed: {}", key);
         }
     }
 
+    /**
+     * 学生浏览导师推荐流（游标分页）
+     * 第一页即 LLM 细排后的推荐结果；之后的页面直接读取已缓存的完整排序，不再重新检索
+     * cursor 为空表示第一页，返回的 nextCursor 为空表示没有更多结果
+     */
+    public Map<String, Object> getMentorFeedForStudent(Integer studentId, Integer cursor, Integer pageSize) {
+        String feedKey = CACHE_PREFIX_FEED_MENTOR + studentId;
+        if (cursor == null) {
+            List<Map<String, Object>> firstPage = getMentorRecommendationsForStudent(studentId, pageSize);
+            return buildFeedPage(firstPage, readFeed(feedKey), 0);
+        }
+
+        FeedRanking ranking = readFeed(feedKey);
+        if (ranking == null) {
+            // 完整排序已过期：重新生成一次（同时刷新第一页缓存）
+            invalidateStudentCache(studentId);
+            getMentorRecommendationsForStudent(studentId, pageSize);
+            ranking = readFeed(feedKey);
+        }
+        if (ranking == null) {
+            return buildFeedPage(Collections.emptyList(), null, cursor);
+        }
+
+        int[] positions = ranking.page(cursor, pageSize);
+        List<Integer> ids = new ArrayList<>();
+        for (int position : positions) {
+            ids.add(ranking.ids[position]);
+        }
+        Map<Integer, Mentor> mentorsById = loadMentorsByIds(ids);
+        Student student = studentMapper.getStudentById(studentId);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int position : positions) {
+            Mentor mentor = mentorsById.get(ranking.ids[position]);
+            if (mentor == null || mentor.getStatus() != 1) continue;
+            Map<String, Object> item = new HashMap<>();
+            item.put("mentor", mentor);
+            item.put("score", ranking.scores[position]);
+            item.put("feedRank", position + 1);
+            item.put("reason", generateTemplateReason(mentor, student));
+            items.add(item);
+        }
+        int next = positions.length > 0 ? positions[positions.length - 1] + 1 : ranking.ids.length;
+        return buildFeedPage(items, ranking, next);
+    }
+
+    /**
+     * 导师浏览学生推荐流（游标分页），规则同 getMentorFeedForStudent
+     */
+    public Map<String, Object> getStudentFeedForMentor(Integer mentorId, Integer cursor, Integer pageSize) {
+        String feedKey = CACHE_PREFIX_FEED_STUDENT + mentorId;
+        if (cursor == null) {
+            List<Map<String, Object>> firstPage = getStudentRecommendationsForMentor(mentorId, pageSize);
+            return buildFeedPage(firstPage, readFeed(feedKey), 0);
+        }
+
+        FeedRanking ranking = readFeed(feedKey);
+        if (ranking == null) {
+            invalidateMentorCache(mentorId);
+            getStudentRecommendationsForMentor(mentorId, pageSize);
+            ranking = readFeed(feedKey);
+        }
+        if (ranking == null) {
+            return buildFeedPage(Collections.emptyList(), null, cursor);
+        }
+
+        int[] positions = ranking.page(cursor, pageSize);
+        List<Integer> ids = new ArrayList<>();
+        for (int position : positions) {
+            ids.add(ranking.ids[position]);
+        }
+        Map<Integer, Student> studentsById = loadStudentsByIds(ids);
+        Mentor mentor = mentorMapper.getMentorById(mentorId);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int position : positions) {
+            Student student = studentsById.get(ranking.ids[position]);
+            if (student == null || student.getStatus() != 1) continue;
+            Map<String, Object> item = new HashMap<>();
+            item.put("student", student);
+            item.put("score", ranking.scores[position]);
+            item.put("feedRank", position + 1);
+            item.put("reason", mentor != null ? generateStudentTemplateReason(student, mentor) : "");
+            items.add(item);
+        }
+        int next = positions.length > 0 ? positions[positions.length - 1] + 1 : ranking.ids.length;
+        return buildFeedPage(items, ranking, next);
+    }
+
+    private Map<String, Object> buildFeedPage(List<Map<String, Object>> items, FeedRanking ranking, int nextCursor) {
+        boolean hasMore = ranking != null && ranking.hasMore(nextCursor);
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", hasMore ? nextCursor : null);
+        page.put("hasMore", hasMore);
+        page.put("total", ranking != null ? ranking.ids.length : items.size());
+        return page;
+    }
+
+    /**
+     * 缓存完整排序（紧凑的 "id:score" 串）以及第一页已展示的ID
+     */
+    private void cacheFeed(String key, List<Map<String, Object>> ranked, List<Map<String, Object>> firstPage,
+                           String entityKey, long ttlSeconds) {
+        if (redisTemplate == null || ranked.isEmpty()) return;
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (Map<String, Object> rec : ranked) {
+                Integer id = entityId(rec.get(entityKey));
+                if (id == null) continue;
+                if (sb.length() > 0) sb.append(',');
+                sb.append(id).append(':').append(String.format(Locale.ROOT, "%.4f", (Double) rec.get("score")));
+            }
+            List<Integer> firstPageIds = new ArrayList<>();
+            for (Map<String, Object> rec : firstPage) {
+                Integer id = entityId(rec.get(entityKey));
+                if (id != null) firstPageIds.add(id);
+            }
+            Map<String, Object> feed = new HashMap<>();
+            feed.put("ranking", sb.toString());
+            feed.put("firstPage", firstPageIds);
+            redisTemplate.opsForValue().set(key, feed, ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Feed cache write failed: {}", key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private FeedRanking readFeed(String key) {
+        if (redisTemplate == null) return null;
+        try {
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof Map) {
+                Map<String, Object> feed = (Map<String, Object>) cached;
+                return FeedRanking.parse((String) feed.get("ranking"), (List<Number>) feed.get("firstPage"));
+            }
+        } catch (Exception e) {
+            log.warn("Feed cache read failed: {}", key);
+        }
+        return null;
+    }
+
+    private static Integer entityId(Object entity) {
+        if (entity instanceof Mentor) return ((Mentor) entity).getId();
+        if (entity instanceof Student) return ((Student) entity).getId();
+        return null;
+    }
+
+    private Map<Integer, Mentor> loadMentorsByIds(Collection<Integer> ids) {
+        Map<Integer, Mentor> result = new HashMap<>();
+        if (ids.isEmpty()) return result;
+        for (Mentor mentor : mentorMapper.getMentorsByIds(new ArrayList<>(ids))) {
+            result.put(mentor.getId(), mentor);
+        }
+        return result;
+    }
+
+    private Map<Integer, Student> loadStudentsByIds(Collection<Integer> ids) {
+        Map<Integer, Student> result = new HashMap<>();
+        if (ids.isEmpty()) return result;
+        for (Student student : studentMapper.getStudentsByIds(new ArrayList<>(ids))) {
+            result.put(student.getId(), student);
+        }
+        return result;
+    }
+
     /**
      * 清除学生的推荐缓存
      */
     public void invalidateStudentCache(Integer studentId) {
         if (redisTemplate == null) return;
         try {
-            redisTemplate.delete(CACHE_PREFIX_MENTOR + studentId);
+            redisTemplate.delete(Arrays.asList(CACHE_PREFIX_MENTOR + studentId, CACHE_PREFIX_LEXICAL + studentId,
+                CACHE_PREFIX_FEED_MENTOR + studentId));
         } catch (Exception e) {
             log.warn("Cache invalidate failed");
         }
@@ -1107,12 +1561,31 @@ public class SemanticRecommendationService {
     public void invalidateMentorCache(Integer mentorId) {
         if (redisTemplate == null) return;
         try {
-            redisTemplate.delete(CACHE_PREFIX_STUDENT + mentorId);
+            redisTemplate.delete(Arrays.asList(CACHE_PREFIX_STUDENT + mentorId, CACHE_PREFIX_FEED_STUDENT + mentorId));
         } catch (Exception e) {
             log.warn("Cache invalidate failed");
         }
     }
 
+    /**
+     * 词法匹配结果（带缓存），用于语义检索不可用或预算不足时
+     */
+    private List<Map<String, Object>> getLexicalMentorRecommendations(Student student, UserPreference preference,
+                                                                      int limit, RecommendationBudget budget) {
+        long stageStart = System.nanoTime();
+        String cacheKey = CACHE_PREFIX_LEXICAL + student.getId();
+        List<Map<String, Object>> cached = getCachedResult(cacheKey);
+        if (cached != null && !cached.isEmpty()) {
+            budget.recordStage(RecommendationBudget.STAGE_LEXICAL, stageStart);
+            return cached.stream().limit(limit).collect(Collectors.toList());
+        }
+
+        List<Map<String, Object>> recommendations = getKeywordBasedMentorRecommendations(student, preference, limit);
+        cacheResult(cacheKey, recommendations, cacheTtl);
+        budget.recordStage(RecommendationBudget.STAGE_LEXICAL, stageStart);
+        return recommendations;
+    }
+
     /**
      * 基于关键词的简单导师匹配
      */
@@ -1194,8 +1667,31 @@ public class SemanticRecommendationService {
         List<Map<String, Object>> recommendations = new ArrayList<>();
         
         try {
-            // 获取热门导师（按评分和浏览量排序）
-            List<Mentor> mentors = mentorMapper.getMentorList(0, limit * 2);
+            // 优先使用近 24 小时热门导师
+            Set<Integer> trendingIds = new HashSet<>();
+            for (Map<String, Object> trending : trendingMentorService.getTrendingMentors("24h", limit)) {
+                Mentor mentor = (Mentor) trending.get("mentor");
+                trendingIds.add(mentor.getId());
+
+                Map<String, Object> recommendation = new HashMap<>();
+                recommendation.put("mentor", mentor);
+                recommendation.put("score", 0.5 + calculateMentorBonus(mentor));
+                recommendation.put("reason", "近期热门导师，研究方向：" + nullSafe(mentor.getResearchAreas()));
+
+                Map<String, Double> matchDetails = new HashMap<>();
+                matchDetails.put("popularity", 0.5);
+                matchDetails.put("quality_bonus", calculateMentorBonus(mentor));
+                recommendation.put("matchDetails", matchDetails);
+
+                recommendations.add(recommendation);
+            }
+            if (recommendations.size() >= limit) {
+                return recommendations;
+            }
+
+            // 不足时按评分和浏览量补齐
+            List<Mentor> mentors = mentorMapper.getMentorList(0, limit * 2 + trendingIds.size());
+            mentors.removeIf(mentor -> trendingIds.contains(mentor.getId()));
             
             // 按评分和浏览量排序
             mentors.sort((a, b) -> {
@@ -1340,4 +1836,60 @@ public class SemanticRecommendationService {
             return new HashMap<>(scores);
         }
     }
+
+    /**
+     * 推荐流的完整排序：按排序位置存放的ID与得分数组，以及第一页已展示的ID
+     */
+    private static class FeedRanking {
+        final int[] ids;
+        final double[] scores;
+        final Set<Integer> firstPage;
+
+        FeedRanking(int[] ids, double[] scores, Set<Integer> firstPage) {
+            this.ids = ids;
+            this.scores = scores;
+            this.firstPage = firstPage;
+        }
+
+        static FeedRanking parse(String ranking, List<Number> firstPageIds) {
+            if (ranking == null) return null;
+            String[] entries = ranking.isEmpty() ? new String[0] : ranking.split(",");
+            int[] ids = new int[entries.length];
+            double[] scores = new double[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                int sep = entries[i].indexOf(':');
+                ids[i] = Integer.parseInt(entries[i].substring(0, sep));
+                scores[i] = Double.parseDouble(entries[i].substring(sep + 1));
+            }
+            Set<Integer> firstPage = new HashSet<>();
+            if (firstPageIds != null) {
+                for (Number id : firstPageIds) {
+                    firstPage.add(id.intValue());
+                }
+            }
+            return new FeedRanking(ids, scores, firstPage);
+        }
+
+        /**
+         * 从游标位置开始取一页，跳过第一页已展示的ID，返回排序位置
+         */
+        int[] page(int cursor, int size) {
+            // 按剩余条数分配，避免超大 size 一次性申请大数组
+            int[] positions = new int[Math.max(0, Math.min(size, ids.length - Math.max(0, cursor)))];
+            int count = 0;
+            for (int i = Math.max(0, cursor); i < ids.length && count < size; i++) {
+                if (!firstPage.contains(ids[i])) {
+                    positions[count++] = i;
+                }
+            }
+            return Arrays.copyOf(positions, count);
+        }
+
+        boolean hasMore(int cursor) {
+            for (int i = Math.max(0, cursor); i < ids.length; i++) {
+                if (!firstPage.contains(ids[i])) return true;
+            }
+            return false;
+        }
+    }
 }
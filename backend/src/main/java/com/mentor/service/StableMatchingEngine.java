@@ -0,0 +1,282 @@
+package com.mentor.service;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Capacity-constrained Stable Matching Engine
+ * 带名额约束的稳定匹配（学生主动的 Gale–Shapley，医院/住院医师模型）
+ *
+ * 输入全部为原始类型数组，不依赖实体对象：
+ * - studentPrefs[s]：学生 s 的候选导师下标，按学生偏好从高到低排列
+ * - mentorScores[s][j]：导师 studentPrefs[s][j] 对学生 s 的评分（越高越偏好）
+ * - capacity[m]：导师 m 的剩余名额
+ *
+ * 按轮并行执行：每一轮所有空闲学生同时向下一位候选导师申请，
+ * 每位导师将新申请与已暂定的学生合并，只保留评分最高的 capacity 名，其余学生进入下一轮。
+ * 学生主动的 Gale–Shapley 结果与申请顺序无关，因此并行执行得到的仍是学生最优稳定匹配。
+ */
+public final class StableMatchingEngine {
+
+    public static final int UNMATCHED = -1;
+
+    private StableMatchingEngine() {
+    }
+
+    /**
+     * 计算稳定匹配
+     */
+    public static Result match(int mentorCount, int[] capacity, int[][] studentPrefs, float[][] mentorScores) {
+        int studentCount = studentPrefs.length;
+        if (capacity.length != mentorCount || mentorScores.length != studentCount) {
+            throw new IllegalArgumentException("Preference arrays do not match student/mentor counts");
+        }
+
+        // 每位导师的暂定学生：按评分组织的小顶堆，堆顶是当前最弱的暂定学生
+        int[][] heldStudents = new int[mentorCount][];
+        float[][] heldScores = new float[mentorCount][];
+        int[] heldSize = new int[mentorCount];
+        for (int m = 0; m < mentorCount; m++) {
+            heldStudents[m] = new int[Math.max(0, capacity[m])];
+            heldScores[m] = new float[Math.max(0, capacity[m])];
+        }
+
+        int[] next = new int[studentCount];
+        int[] free = IntStream.range(0, studentCount).toArray();
+        int freeCount = studentCount;
+
+        int[] proposalMentor = new int[studentCount];
+        float[] proposalScore = new float[studentCount];
+        int[] bucketStart = new int[mentorCount + 1];
+        int[] bucketStudents = new int[studentCount];
+        float[] bucketScores = new float[studentCount];
+        int[] rejectedCount = new int[mentorCount];
+
+        int rounds = 0;
+        long proposals = 0;
+
+        while (freeCount > 0) {
+            rounds++;
+
+            // 1. 申请阶段：空闲学生向下一位候选导师申请，候选耗尽的学生保持未匹配
+            final int[] currentFree = free;
+            IntStream.range(0, freeCount).parallel().forEach(i -> {
+                int s = currentFree[i];
+                int[] prefs = studentPrefs[s];
+                while (next[s] < prefs.length && capacity[prefs[next[s]]] <= 0) {
+                    next[s]++;
+                }
+                if (next[s] < prefs.length) {
+                    proposalMentor[i] = prefs[next[s]];
+                    proposalScore[i] = mentorScores[s][next[s]];
+                    next[s]++;
+                } else {
+                    proposalMentor[i] = UNMATCHED;
+                }
+            });
+
+            // 2. 按导师分桶（计数排序）
+            Arrays.fill(bucketStart, 0);
+            int proposalCount = 0;
+            for (int i = 0; i < freeCount; i++) {
+                if (proposalMentor[i] != UNMATCHED) {
+                    bucketStart[proposalMentor[i] + 1]++;
+                    proposalCount++;
+                }
+            }
+            if (proposalCount == 0) {
+                break;
+            }
+            proposals += proposalCount;
+            for (int m = 0; m < mentorCount; m++) {
+                bucketStart[m + 1] += bucketStart[m];
+            }
+            int[] fill = Arrays.copyOf(bucketStart, mentorCount);
+            for (int i = 0; i < freeCount; i++) {
+                int m = proposalMentor[i];
+                if (m != UNMATCHED) {
+                    int pos = fill[m]++;
+                    bucketStudents[pos] = currentFree[i];
+                    bucketScores[pos] = proposalScore[i];
+                }
+            }
+
+            // 3. 导师阶段：各导师独立处理本轮申请，被拒绝的学生原地写回本导师的桶区间
+            IntStream.range(0, mentorCount).parallel().forEach(m -> {
+                int from = bucketStart[m];
+                int to = bucketStart[m + 1];
+                int rejected = 0;
+                for (int pos = from; pos < to; pos++) {
+                    int student = bucketStudents[pos];
+                    float score = bucketScores[pos];
+                    int evicted = offer(heldStudents[m], heldScores[m], heldSize, m, student, score);
+                    if (evicted != UNMATCHED) {
+                        bucketStudents[from + rejected] = evicted;
+                        rejected++;
+                    }
+                }
+                rejectedCount[m] = rejected;
+            });
+
+            // 4. 收集被拒绝的学生进入下一轮
+            int[] nextFree = new int[proposalCount];
+            int nextCount = 0;
+            for (int m = 0; m < mentorCount; m++) {
+                int from = bucketStart[m];
+                for (int k = 0; k < rejectedCount[m]; k++) {
+                    nextFree[nextCount++] = bucketStudents[from + k];
+                }
+            }
+            free = nextFree;
+            freeCount = nextCount;
+        }
+
+        // 汇总结果
+        int[] studentMentor = new int[studentCount];
+        float[] studentMentorScore = new float[studentCount];
+        Arrays.fill(studentMentor, UNMATCHED);
+        int matched = 0;
+        for (int m = 0; m < mentorCount; m++) {
+            for (int k = 0; k < heldSize[m]; k++) {
+                studentMentor[heldStudents[m][k]] = m;
+                studentMentorScore[heldStudents[m][k]] = heldScores[m][k];
+                matched++;
+            }
+        }
+        int[] studentRank = new int[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            // 匹配到的导师是学生最后一次申请的候选（0-based 偏好位次）
+            studentRank[s] = studentMentor[s] == UNMATCHED ? UNMATCHED : next[s] - 1;
+        }
+        return new Result(studentMentor, studentRank, studentMentorScore, matched, rounds, proposals);
+    }
+
+    /**
+     * 向导师 m 的暂定集合加入一名学生
+     * 返回被淘汰的学生（可能是申请者本身），名额未满时返回 UNMATCHED
+     */
+    private static int offer(int[] students, float[] scores, int[] heldSize, int m, int student, float score) {
+        int capacity = students.length;
+        if (capacity == 0) {
+            return student;
+        }
+        int size = heldSize[m];
+        if (size < capacity) {
+            students[size] = student;
+            scores[size] = score;
+            heldSize[m] = size + 1;
+            siftUp(students, scores, size);
+            return UNMATCHED;
+        }
+        if (!prefers(score, student, scores[0], students[0])) {
+            return student;
+        }
+        int evicted = students[0];
+        students[0] = student;
+        scores[0] = score;
+        siftDown(students, scores, size);
+        return evicted;
+    }
+
+    /**
+     * 导师是否更偏好 a 而非 b：评分高者优先，评分相同时学生下标小者优先（保证结果确定）
+     */
+    private static boolean prefers(float scoreA, int studentA, float scoreB, int studentB) {
+        if (scoreA != scoreB) {
+            return scoreA > scoreB;
+        }
+        return studentA < studentB;
+    }
+
+    private static void siftUp(int[] students, float[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!prefers(scores[parent], students[parent], scores[index], students[index])) {
+                break;
+            }
+            swap(students, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] students, float[] scores, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int weakest = left;
+            int right = left + 1;
+            if (right < size && prefers(scores[left], students[left], scores[right], students[right])) {
+                weakest = right;
+            }
+            if (!prefers(scores[index], students[index], scores[weakest], students[weakest])) {
+                break;
+            }
+            swap(students, scores, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] students, float[] scores, int i, int j) {
+        int student = students[i];
+        students[i] = students[j];
+        students[j] = student;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    /**
+     * Matching Result
+     * 匹配结果，studentMentor[s] 为学生 s 匹配到的导师下标（未匹配为 UNMATCHED）
+     */
+    public static final class Result {
+        private final int[] studentMentor;
+        private final int[] studentRank;
+        private final float[] mentorScore;
+        private final int matched;
+        private final int rounds;
+        private final long proposals;
+
+        Result(int[] studentMentor, int[] studentRank, float[] mentorScore, int matched, int rounds, long proposals) {
+            this.studentMentor = studentMentor;
+            this.studentRank = studentRank;
+            this.mentorScore = mentorScore;
+            this.matched = matched;
+            this.rounds = rounds;
+            this.proposals = proposals;
+        }
+
+        public int[] getStudentMentor() {
+            return studentMentor;
+        }
+
+        /**
+         * 匹配导师在学生候选列表中的位次（0 为首选）
+         */
+        public int[] getStudentRank() {
+            return studentRank;
+        }
+
+        /**
+         * 匹配导师对该学生的评分
+         */
+        public float[] getMentorScore() {
+            return mentorScore;
+        }
+
+        public int getMatched() {
+            return matched;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        public long getProposals() {
+            return proposals;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.mentor.service;
+
+import com.mentor.entity.Mentor;
+import com.mentor.mapper.MentorMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trending Mentor Service
+ * 实时热门导师：基于行为事件的滑动窗口热点统计，内存占用固定、与流量无关
+ *
+ * 时间按桶划分，每个桶包含一个 Count-Min Sketch（估计任意导师在桶内的加权事件数）
+ * 和一个 Space-Saving top-K（记录桶内的候选热点）。两组环形桶：
+ * - 5 分钟桶 × 12，用于 1h 窗口；
+ * - 1 小时桶 × 168，用于 24h / 7d 窗口。
+ * 查询时取窗口内各桶 top-K 的并集作为候选，用各桶 Sketch 估计值之和排序。
+ * 查询逐桶短暂持锁，不会在整个计算期间阻塞记录行为的请求线程；各窗口的排序缓存 cache-ms 毫秒。
+ * 统计只覆盖本节点收到的行为事件。
+ */
+@Slf4j
+@Service
+public class TrendingMentorService {
+
+    @Autowired
+    private MentorMapper mentorMapper;
+
+    @Value("${trending.sketch-width:1024}")
+    private Integer sketchWidth;
+
+    @Value("${trending.sketch-depth:4}")
+    private Integer sketchDepth;
+
+    @Value("${trending.top-k:64}")
+    private Integer topK;
+
+    @Value("${trending.cache-ms:5000}")
+    private Long cacheMs;
+
+    private static final long FIVE_MINUTES = 5 * 60 * 1000L;
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    // 行为权重：申请、评分比浏览更能反映热度
+    private static final Map<String, Integer> ACTION_WEIGHTS = new HashMap<>();
+
+    static {
+        ACTION_WEIGHTS.put("view", 1);
+        ACTION_WEIGHTS.put("search", 1);
+        ACTION_WEIGHTS.put("rate", 3);
+        ACTION_WEIGHTS.put("apply", 5);
+    }
+
+    private Ring minuteRing;
+    private Ring hourRing;
+    private long[] seeds;
+
+    // window -> 最近一次计算的完整排序
+    private final Map<String, Ranking> rankings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        seeds = new long[sketchDepth];
+        Random random = new Random(0x5eedL);
+        for (int i = 0; i < sketchDepth; i++) {
+            seeds[i] = random.nextLong();
+        }
+        minuteRing = new Ring(FIVE_MINUTES, 12);
+        hourRing = new Ring(ONE_HOUR, 7 * 24);
+    }
+
+    /**
+     * 记录一次导师相关行为
+     */
+    public void record(Integer mentorId, String actionType) {
+        if (mentorId == null) {
+            return;
+        }
+        int weight = ACTION_WEIGHTS.getOrDefault(actionType, 1);
+        long now = System.currentTimeMillis();
+        minuteRing.add(mentorId, weight, now);
+        hourRing.add(mentorId, weight, now);
+    }
+
+    /**
+     * 窗口内热度最高的导师 ID 及估计热度（降序）
+     *
+     * @param window 1h、24h 或 7d
+     */
+    public LinkedHashMap<Integer, Long> topMentorIds(String window, int limit) {
+        long now = System.currentTimeMillis();
+        String key = "1h".equals(window) || "7d".equals(window) ? window : "24h";
+        Ranking ranking = rankings.get(key);
+        if (ranking == null || now - ranking.computedAt > cacheMs) {
+            Map<Integer, Long> scores;
+            if ("1h".equals(key)) {
+                scores = minuteRing.scores(12, now);
+            } else if ("7d".equals(key)) {
+                scores = hourRing.scores(7 * 24, now);
+            } else {
+                scores = hourRing.scores(24, now);
+            }
+            List<Map.Entry<Integer, Long>> sorted = new ArrayList<>(scores.entrySet());
+            sorted.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+            ranking = new Ranking(sorted, now);
+            rankings.put(key, ranking);
+        }
+        LinkedHashMap<Integer, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry : ranking.sorted) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Get trending mentors
+     * 获取窗口内的热门导师（只返回在职导师）
+     */
+    public List<Map<String, Object>> getTrendingMentors(String window, int limit) {
+        LinkedHashMap<Integer, Long> top = topMentorIds(window, limit * 2);
+        if (top.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Mentor> mentors = new HashMap<>();
+        for (Mentor mentor : mentorMapper.getMentorsByIds(new ArrayList<>(top.keySet()))) {
+            mentors.put(mentor.getId(), mentor);
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<Integer, Long> entry : top.entrySet()) {
+            Mentor mentor = mentors.get(entry.getKey());
+            if (mentor == null || !Integer.valueOf(1).equals(mentor.getStatus())) {
+                continue;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("mentor", mentor);
+            item.put("score", entry.getValue());
+            result.add(item);
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private int hash(int mentorId, int row) {
+        // SplitMix64 混合
+        long z = mentorId ^ seeds[row];
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (int) Math.floorMod(z, (long) sketchWidth);
+    }
+
+    /**
+     * 环形时间桶
+     */
+    private class Ring {
+        final long bucketMs;
+        final Bucket[] buckets;
+
+        Ring(long bucketMs, int size) {
+            this.bucketMs = bucketMs;
+            this.buckets = new Bucket[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        synchronized void add(int mentorId, int weight, long now) {
+            long epoch = now / bucketMs;
+            Bucket bucket = buckets[(int) (epoch % buckets.length)];
+            if (bucket.epoch != epoch) {
+                // 桶已过期：复用并清零
+                bucket.reset(epoch);
+            }
+            bucket.add(mentorId, weight);
+        }
+
+        /**
+         * 最近 count 个桶的候选导师及估计热度
+         * 桶会被 add 原地复用，因此逐桶持锁读取：先收集候选，再逐桶累加估计值
+         */
+        Map<Integer, Long> scores(int count, long now) {
+            long current = now / bucketMs;
+            long oldest = current - count;
+            Set<Integer> candidates = new HashSet<>();
+            for (Bucket bucket : buckets) {
+                synchronized (this) {
+                    if (bucket.epoch > oldest && bucket.epoch <= current) {
+                        candidates.addAll(bucket.top.keySet());
+                    }
+                }
+            }
+            int[] ids = candidates.stream().mapToInt(Integer::intValue).toArray();
+            long[] totals = new long[ids.length];
+            for (Bucket bucket : buckets) {
+                synchronized (this) {
+                    if (bucket.epoch <= oldest || bucket.epoch > current) {
+                        continue;
+                    }
+                    for (int i = 0; i < ids.length; i++) {
+                        totals[i] += bucket.estimate(ids[i]);
+                    }
+                }
+            }
+            Map<Integer, Long> scores = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                scores.put(ids[i], totals[i]);
+            }
+            return scores;
+        }
+    }
+
+    private static class Ranking {
+        final List<Map.Entry<Integer, Long>> sorted;
+        final long computedAt;
+
+        Ranking(List<Map.Entry<Integer, Long>> sorted, long computedAt) {
+            this.sorted = sorted;
+            this.computedAt = computedAt;
+        }
+    }
+
+    /**
+     * 单个时间桶：Count-Min Sketch + Space-Saving top-K
+     */
+    private class Bucket {
+        long epoch = -1;
+        final int[][] sketch = new int[sketchDepth][sketchWidth];
+        // mentorId -> 计数（Space-Saving，可能高估）
+        final Map<Integer, Long> top = new HashMap<>();
+
+        void reset(long newEpoch) {
+            epoch = newEpoch;
+            for (int[] row : sketch) {
+                Arrays.fill(row, 0);
+            }
+            top.clear();
+        }
+
+        void add(int mentorId, int weight) {
+            for (int row = 0; row < sketch.length; row++) {
+                sketch[row][hash(mentorId, row)] += weight;
+            }
+            Long count = top.get(mentorId);
+            if (count != null) {
+                top.put(mentorId, count + weight);
+            } else if (top.size() < topK) {
+                top.put(mentorId, (long) weight);
+            } else {
+                // 替换计数最小的候选，继承其计数
+                Map.Entry<Integer, Long> min = null;
+                for (Map.Entry<Integer, Long> entry : top.entrySet()) {
+                    if (min == null || entry.getValue() < min.getValue()) {
+                        min = entry;
+                    }
+                }
+                long inherited = min.getValue();
+                top.remove(min.getKey());
+                top.put(mentorId, inherited + weight);
+            }
+        }
+
+        long estimate(int mentorId) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < sketch.length; row++) {
+                estimate = Math.min(estimate, sketch[row][hash(mentorId, row)]);
+            }
+            return estimate;
+        }
+    }
+}
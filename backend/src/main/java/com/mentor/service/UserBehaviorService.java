@@ -4,10 +4,10 @@ import com.mentor.entity.BrowsingHistory;
 import com.mentor.mapper.BrowsingHistoryMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * User Behavior Service
@@ -19,11 +19,16 @@ public class UserBehaviorService {
     @Autowired
     private BrowsingHistoryMapper browsingHistoryMapper;
 
+    @Autowired
+    private BrowsingHistoryWriter browsingHistoryWriter;
+
+    @Autowired
+    private TrendingMentorService trendingMentorService;
+
     /**
      * Track user behavior
-     * 记录用户行为
+     * 记录用户行为（进入批量写入队列，不在请求线程写库）
      */
-    @Transactional
     public void trackBehavior(Integer userId, String userType, String targetType,
                              Integer targetId, String actionType, Integer durationSeconds) {
         BrowsingHistory history = BrowsingHistory.builder()
@@ -36,7 +41,12 @@ public class UserBehaviorService {
                 .createTime(new Date())
                 .build();
 
-        browsingHistoryMapper.insertBrowsingHistory(history);
+        // 落库后由写入线程提交偏好分析检查
+        browsingHistoryWriter.submit(history);
+
+        if ("mentor".equals(targetType)) {
+            trendingMentorService.record(targetId, actionType);
+        }
     }
 
     /**
@@ -55,11 +65,20 @@ public class UserBehaviorService {
         return browsingHistoryMapper.getRecentMentorViews(userId, limit);
     }
 
+    /**
+     * Get tracking ingestion stats
+     * 获取行为记录写入统计
+     */
+    public Map<String, Object> getIngestionStats() {
+        return browsingHistoryWriter.getStats();
+    }
+
     /**
      * Count user history
      * 统计用户历史记录数
      */
     public int countUserHistory(Integer userId) {
-        return browsingHistoryMapper.countUserHistory(userId);
+        Integer count = browsingHistoryMapper.getUserEventCount(userId);
+        return count != null ? count : 0;
     }
 }
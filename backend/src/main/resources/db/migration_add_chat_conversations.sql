@@ -0,0 +1,45 @@
+-- ============================================
+-- Migration: Add chat conversation summary table
+-- ============================================
+
+-- Index for per-conversation message lookups
+ALTER TABLE `chat_messages`
+ADD INDEX `idx_student_mentor_time` (`student_id`, `mentor_id`, `create_time`);
+
+-- Conversation summary (read model maintained on send/read)
+CREATE TABLE IF NOT EXISTS `chat_conversations` (
+  `student_id` INT NOT NULL COMMENT '学生ID',
+  `mentor_id` INT NOT NULL COMMENT '导师ID',
+  `last_message_id` BIGINT NOT NULL COMMENT '最后一条消息ID',
+  `last_message_preview` VARCHAR(200) COMMENT '最后一条消息摘要',
+  `last_time` DATETIME COMMENT '最后一条消息时间',
+  `unread_for_student` INT DEFAULT 0 COMMENT '学生未读数',
+  `unread_for_mentor` INT DEFAULT 0 COMMENT '导师未读数',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`student_id`, `mentor_id`),
+  INDEX `idx_student_last_time` (`student_id`, `last_time`),
+  INDEX `idx_mentor_last_time` (`mentor_id`, `last_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聊天会话汇总表';
+
+-- Backfill from existing messages
+INSERT INTO `chat_conversations` (
+  `student_id`, `mentor_id`, `last_message_id`, `last_message_preview`, `last_time`,
+  `unread_for_student`, `unread_for_mentor`
+)
+SELECT agg.student_id, agg.mentor_id, agg.last_id, LEFT(last_msg.content, 200), last_msg.create_time,
+       agg.unread_for_student, agg.unread_for_mentor
+FROM (
+  SELECT student_id, mentor_id, MAX(id) AS last_id,
+         SUM(sender_type = 'mentor' AND is_read = FALSE) AS unread_for_student,
+         SUM(sender_type = 'student' AND is_read = FALSE) AS unread_for_mentor
+  FROM chat_messages
+  WHERE student_id IS NOT NULL AND mentor_id IS NOT NULL
+  GROUP BY student_id, mentor_id
+) agg
+JOIN chat_messages last_msg ON last_msg.id = agg.last_id
+ON DUPLICATE KEY UPDATE
+  `last_message_id` = VALUES(`last_message_id`),
+  `last_message_preview` = VALUES(`last_message_preview`),
+  `last_time` = VALUES(`last_time`),
+  `unread_for_student` = VALUES(`unread_for_student`),
+  `unread_for_mentor` = VALUES(`unread_for_mentor`);
@@ -0,0 +1,7 @@
+-- ============================================
+-- Migration: Add keyset pagination index for chat history
+-- ============================================
+
+-- Scroll-back by message id within a student-mentor conversation
+ALTER TABLE `chat_messages`
+ADD INDEX `idx_student_mentor_id` (`student_id`, `mentor_id`, `id`);
@@ -0,0 +1,21 @@
+-- ============================================
+-- Migration: Add per-user behaviour counters
+-- ============================================
+
+-- Event counts per user, incremented in the same transaction as browsing_history batches
+CREATE TABLE IF NOT EXISTS `user_behavior_stats` (
+  `user_id` INT NOT NULL COMMENT '用户ID',
+  `event_count` INT NOT NULL DEFAULT 0 COMMENT '行为记录数',
+  `last_event_time` DATETIME COMMENT '最近一次行为时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户行为计数表';
+
+-- Backfill from existing history
+INSERT INTO `user_behavior_stats` (`user_id`, `event_count`, `last_event_time`)
+SELECT `user_id`, COUNT(*), MAX(`create_time`)
+FROM `browsing_history`
+GROUP BY `user_id`
+ON DUPLICATE KEY UPDATE
+  `event_count` = VALUES(`event_count`),
+  `last_event_time` = VALUES(`last_event_time`);
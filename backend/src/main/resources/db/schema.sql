@@ -191,6 +191,15 @@ CREATE TABLE `browsing_history` (
   INDEX `idx_create_time` (`create_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='浏览历史表';
 
+-- Per-user behaviour counters (maintained with each browsing_history batch)
+CREATE TABLE `user_behavior_stats` (
+  `user_id` INT NOT NULL COMMENT '用户ID',
+  `event_count` INT NOT NULL DEFAULT 0 COMMENT '行为记录数',
+  `last_event_time` DATETIME COMMENT '最近一次行为时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户行为计数表';
+
 -- ============================================
 -- 8. USER PREFERENCES TABLE (For LLM Analysis)
 -- ============================================
@@ -215,7 +224,9 @@ CREATE TABLE `user_preferences` (
 -- ============================================
 CREATE TABLE `chat_messages` (
   `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
-  `application_id` INT NOT NULL COMMENT '关联申请ID',
+  `application_id` INT COMMENT '关联申请ID（可选）',
+  `student_id` INT COMMENT '学生ID',
+  `mentor_id` INT COMMENT '导师ID',
   `sender_id` INT NOT NULL COMMENT '发送者ID',
   `sender_type` VARCHAR(20) NOT NULL COMMENT '发送者类型: student, mentor',
   `message_type` VARCHAR(50) DEFAULT 'text' COMMENT '消息类型: text, file, image',
@@ -226,9 +237,26 @@ CREATE TABLE `chat_messages` (
   INDEX `idx_application_id` (`application_id`),
   INDEX `idx_sender` (`sender_id`, `sender_type`),
   INDEX `idx_create_time` (`create_time`),
+  INDEX `idx_student_mentor_time` (`student_id`, `mentor_id`, `create_time`),
+  INDEX `idx_student_mentor_id` (`student_id`, `mentor_id`, `id`),
   FOREIGN KEY (`application_id`) REFERENCES `applications`(`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聊天消息表';
 
+-- Conversation summary (read model maintained on send/read)
+CREATE TABLE `chat_conversations` (
+  `student_id` INT NOT NULL COMMENT '学生ID',
+  `mentor_id` INT NOT NULL COMMENT '导师ID',
+  `last_message_id` BIGINT NOT NULL COMMENT '最后一条消息ID',
+  `last_message_preview` VARCHAR(200) COMMENT '最后一条消息摘要',
+  `last_time` DATETIME COMMENT '最后一条消息时间',
+  `unread_for_student` INT DEFAULT 0 COMMENT '学生未读数',
+  `unread_for_mentor` INT DEFAULT 0 COMMENT '导师未读数',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`student_id`, `mentor_id`),
+  INDEX `idx_student_last_time` (`student_id`, `last_time`),
+  INDEX `idx_mentor_last_time` (`mentor_id`, `last_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聊天会话汇总表';
+
 -- ============================================
 -- 10. ROLES TABLE (Shiro RBAC)
 -- ============================================
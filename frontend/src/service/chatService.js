@@ -2,20 +2,36 @@ import axios from './axios'
 import { Client } from '@stomp/stompjs'
 import SockJS from 'sockjs-client'
 
+// 重连补发会带上 lastSeenId 之前几秒的消息，集合需覆盖这段窗口
+const SEEN_ID_LIMIT = 500
+
 class ChatService {
   constructor() {
     this.stompClient = null
     this.connected = false
+    // destination -> 收到过的最大消息ID / 最近收到的消息ID集合 / 回调，重连后用于增量同步
+    // 不同节点生成的ID之间没有先后保证，去重按ID集合而不是与最大ID比较
+    this.lastSeenIds = {}
+    this.seenIds = {}
+    this.handlers = {}
   }
 
   connect(onMessageReceived, onConnected, onError) {
     this.stompClient = new Client({
       webSocketFactory: () => new SockJS('/ws'),
+      // 在线状态按 userId 维护
+      connectHeaders: this.currentUserHeaders(),
       reconnectDelay: 5000,
       heartbeatIncoming: 4000,
       heartbeatOutgoing: 4000,
       onConnect: frame => {
         this.connected = true
+        // 先订阅补发队列，再订阅聊天频道（携带 lastSeenId）
+        this.stompClient.subscribe('/user/queue/resync', message => {
+          const { destination, messages } = JSON.parse(message.body)
+          const handler = this.handlers[destination]
+          if (handler) messages.forEach(handler)
+        })
         // Call onMessageReceived first to set up subscriptions
         if (onMessageReceived) onMessageReceived(frame)
         // Then call onConnected callback
@@ -30,6 +46,11 @@ class ChatService {
     this.stompClient.activate()
   }
 
+  currentUserHeaders() {
+    const user = JSON.parse(localStorage.getItem('user'))
+    return user && user.id ? { userId: String(user.id) } : {}
+  }
+
   disconnect() {
     if (this.stompClient && this.connected) {
       this.stompClient.deactivate()
@@ -38,24 +59,41 @@ class ChatService {
   }
 
   subscribe(applicationId, callback) {
-    if (this.stompClient && this.connected) {
-      return this.stompClient.subscribe(`/topic/chat/${applicationId}`, message => {
-        const parsedMessage = JSON.parse(message.body)
-        callback(parsedMessage)
-      })
-    }
+    return this.subscribeDestination(`/topic/chat/${applicationId}`, callback)
   }
 
   // 订阅直接聊天 - 支持chatRoomId格式
   subscribeDirectChat(chatRoomId, callback) {
+    return this.subscribeDestination(`/topic/direct/${chatRoomId}`, callback)
+  }
+
+  subscribeDestination(destination, callback) {
     if (this.stompClient && this.connected) {
-      return this.stompClient.subscribe(`/topic/direct/${chatRoomId}`, message => {
-        const parsedMessage = JSON.parse(message.body)
+      const handler = parsedMessage => {
+        if (parsedMessage.id) {
+          if (this.hasSeen(destination, parsedMessage.id)) return
+          const lastSeenId = this.lastSeenIds[destination]
+          if (!lastSeenId || parsedMessage.id > lastSeenId) this.lastSeenIds[destination] = parsedMessage.id
+        }
         callback(parsedMessage)
-      })
+      }
+      this.handlers[destination] = handler
+      const headers = this.lastSeenIds[destination] ? { lastSeenId: String(this.lastSeenIds[destination]) } : {}
+      return this.stompClient.subscribe(destination, message => {
+        handler(JSON.parse(message.body))
+      }, headers)
     }
   }
 
+  // 记录已收到的消息ID，已收到过时返回 true；每个频道只保留最近 SEEN_ID_LIMIT 个
+  hasSeen(destination, id) {
+    const seen = this.seenIds[destination] || (this.seenIds[destination] = new Set())
+    if (seen.has(id)) return true
+    seen.add(id)
+    if (seen.size > SEEN_ID_LIMIT) seen.delete(seen.values().next().value)
+    return false
+  }
+
   sendMessage(message) {
     if (this.stompClient && this.connected) {
       this.stompClient.publish({
@@ -81,10 +119,23 @@ class ChatService {
     })
   }
 
+  // 按消息ID游标获取历史（含已归档消息）：不传 beforeId 时为最新一页
+  getHistory(applicationId, beforeId, limit = 50) {
+    return axios.get(`/chat/${applicationId}/history`, {
+      params: { beforeId, limit }
+    })
+  }
+
   markAsRead(messageId) {
     return axios.put(`/chat/messages/${messageId}/read`)
   }
 
+  markReadUpTo(applicationId, upToId, readerType) {
+    return axios.put(`/chat/${applicationId}/read`, null, {
+      params: { upToId, readerType }
+    })
+  }
+
   getUnreadCount(applicationId, receiverType) {
     return axios.get(`/chat/${applicationId}/unread`, {
       params: { receiverType }
@@ -97,12 +148,48 @@ class ChatService {
     })
   }
 
+  getDirectHistory(studentId, mentorId, beforeId, limit = 50) {
+    return axios.get(`/chat/direct/${studentId}/${mentorId}/history`, {
+      params: { beforeId, limit }
+    })
+  }
+
+  markDirectReadUpTo(studentId, mentorId, upToId, readerType) {
+    return axios.put(`/chat/direct/${studentId}/${mentorId}/read`, null, {
+      params: { upToId, readerType }
+    })
+  }
+
   getDirectUnreadCount(studentId, mentorId, receiverType) {
     return axios.get(`/chat/direct/${studentId}/${mentorId}/unread`, {
       params: { receiverType }
     })
   }
 
+  // 输入状态：target 为 { studentId, mentorId } 或 { applicationId }
+  sendTyping(target, userId, typing = true) {
+    if (this.stompClient && this.connected) {
+      this.stompClient.publish({
+        destination: '/app/chat/typing',
+        body: JSON.stringify({ ...target, userId, typing })
+      })
+    }
+  }
+
+  subscribePresence(userId, callback) {
+    if (this.stompClient && this.connected) {
+      return this.stompClient.subscribe(`/topic/presence/${userId}`, message => {
+        callback(JSON.parse(message.body))
+      })
+    }
+  }
+
+  getPresence(userIds) {
+    return axios.get('/chat/presence', {
+      params: { userIds: userIds.join(',') }
+    })
+  }
+
   getConversations(userId, userType) {
     return axios.get('/chat/conversations', {
       params: { userId, userType }
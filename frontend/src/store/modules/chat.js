@@ -24,6 +24,9 @@ const mutations = {
   SET_MESSAGES(state, { applicationId, messages }) {
     state.messages[applicationId] = messages
   },
+  PREPEND_MESSAGES(state, { applicationId, messages }) {
+    state.messages[applicationId] = messages.concat(state.messages[applicationId] || [])
+  },
   SET_UNREAD_COUNT(state, { applicationId, count }) {
     state.unreadCounts[applicationId] = count
   },
@@ -44,6 +47,9 @@ const actions = {
   setMessages({ commit }, payload) {
     commit('SET_MESSAGES', payload)
   },
+  prependMessages({ commit }, payload) {
+    commit('PREPEND_MESSAGES', payload)
+  },
   setUnreadCount({ commit }, payload) {
     commit('SET_UNREAD_COUNT', payload)
   },